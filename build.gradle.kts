@@ -29,12 +29,46 @@ sourceSets.main {
     java.srcDirs("src/main/java")
 }
 
+// Benchmarks and the stub server they run against, kept out of the library
+val bench by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations["benchImplementation"].extendsFrom(configurations.implementation.get())
+configurations["benchAnnotationProcessor"].extendsFrom(configurations.annotationProcessor.get())
+
 tasks.register<JavaExec>("runMainMethod") {
     group = "application"
     classpath = sourceSets["main"].runtimeClasspath
     mainClass.set("structra.assignment.task.impl.Example")
 }
 
+tasks.register<JavaExec>("runCodecBenchmark") {
+    group = "verification"
+    description = "Measures the allocations per request of the chat completion JSON codec."
+    classpath = bench.runtimeClasspath
+    mainClass.set("structra.assignment.framework.llm.bench.CodecAllocationBenchmark")
+}
+
+tasks.register<JavaExec>("runStubLoadTest") {
+    group = "verification"
+    description = "Load tests the chat completion client against an embedded stub server."
+    classpath = bench.runtimeClasspath
+    mainClass.set("structra.assignment.framework.llm.bench.StubLoadBenchmark")
+}
+
+tasks.register<JavaExec>("generateSyntheticCorpus") {
+    group = "application"
+    description = "Writes a synthetic question corpus of any size for stress tests."
+    classpath = bench.runtimeClasspath
+    mainClass.set("structra.assignment.framework.llm.bench.SyntheticCorpus")
+}
+
+tasks.check {
+    dependsOn(bench.classesTaskName)
+}
+
 tasks.named("build") {
     finalizedBy("runMainMethod")
 }
@@ -0,0 +1,235 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+import structra.assignment.framework.llm.context.ChatMessage;
+import structra.assignment.framework.llm.context.LLMRole;
+import structra.assignment.framework.llm.model.ChatCompletionCodec;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the bytes allocated per request by the JSON encoding and decoding of {@link
+ * ChatCompletionCodec}, compared to building and parsing JSON trees with intermediate strings, for
+ * histories of increasing size. Run it with {@code gradle runCodecBenchmark}.
+ *
+ * <p>The same request is encoded repeatedly, like the history of a long session, so the messages
+ * are only encoded during the warm-up and later requests gather their cached encodings.
+ *
+ * <p>Allocations are measured with the per thread allocation counter of the HotSpot JVM, so the
+ * benchmark requires a HotSpot based runtime.
+ */
+public final class CodecAllocationBenchmark {
+
+    private static final int[] HISTORY_SIZES = {0, 10, 100, 1000};
+    private static final int MESSAGE_LENGTH = 500;
+    private static final int CHOICES = 3;
+    private static final int WARM_UP_FACTOR = 10;
+    private static final int MEASURED_ITERATIONS = 200;
+
+    private static long sink;
+
+    private CodecAllocationBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        if (!(ManagementFactory.getThreadMXBean()
+                instanceof com.sun.management.ThreadMXBean threads)) {
+            System.err.println("Allocation counters are not supported by this runtime");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        byte[] response = createResponse();
+        System.out.printf(
+                "%8s %16s %16s %16s %16s%n",
+                "history", "tree encode", "gather encode", "tree decode", "stream decode");
+
+        for (int size : HISTORY_SIZES) {
+            ModelRequest request = createRequest(size);
+            int iterations = size >= 1000 ? MEASURED_ITERATIONS / 10 : MEASURED_ITERATIONS;
+
+            Task treeEncode = () -> sink += encodeTree(request).length;
+            Task gatherEncode =
+                    () ->
+                            sink +=
+                                    ChatCompletionCodec.encodeRequest("gpt-4o", 0.2, request, false)
+                                            .contentLength();
+            Task treeDecode = () -> sink += decodeTree(new ByteArrayInputStream(response)).size();
+            Task streamDecode =
+                    () ->
+                            sink +=
+                                    ChatCompletionCodec.decodeResponse(
+                                                    new ByteArrayInputStream(response))
+                                            .getChoices()
+                                            .size();
+
+            System.out.printf(
+                    "%8d %16s %16s %16s %16s%n",
+                    size,
+                    format(measure(threads, treeEncode, iterations)),
+                    format(measure(threads, gatherEncode, iterations)),
+                    format(measure(threads, treeDecode, MEASURED_ITERATIONS)),
+                    format(measure(threads, streamDecode, MEASURED_ITERATIONS)));
+        }
+        System.out.println("(bytes allocated per request, checksum " + sink + ")");
+    }
+
+    /** Returns the average number of bytes the task allocates per run. */
+    private static long measure(com.sun.management.ThreadMXBean threads, Task task, int iterations)
+            throws IOException {
+        for (int i = 0; i < iterations * WARM_UP_FACTOR; i++) {
+            task.run();
+        }
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        return (threads.getThreadAllocatedBytes(thread) - before) / iterations;
+    }
+
+    /** Encodes a request by building a JSON tree and a string of the whole body. */
+    private static byte[] encodeTree(ModelRequest request) {
+        JsonArray messages = new JsonArray();
+        messages.add(entry(LLMRole.SYSTEM, request.getSystemContext()));
+        for (ChatMessage message : request.getHistory()) {
+            messages.add(entry(message.getRole(), message.getContent()));
+        }
+        messages.add(entry(LLMRole.USER, request.getPrompt()));
+
+        String body =
+                new Gson()
+                        .toJson(
+                                Map.of(
+                                        "model", "gpt-4o",
+                                        "messages", messages,
+                                        "temperature", 0.2,
+                                        "n", request.getChoices(),
+                                        "stream", false));
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static JsonObject entry(LLMRole role, String content) {
+        JsonObject object = new JsonObject();
+        object.addProperty("role", role.toString());
+        object.addProperty("content", content);
+        return object;
+    }
+
+    /** Decodes a response by concatenating its lines and parsing them into a JSON tree. */
+    private static List<String> decodeTree(InputStream body) throws IOException {
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        StringBuilder text = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            text.append(line);
+        }
+
+        List<String> contents = new ArrayList<>();
+        JsonArray choices =
+                JsonParser.parseString(text.toString()).getAsJsonObject().getAsJsonArray("choices");
+        choices.forEach(
+                choice ->
+                        contents.add(
+                                choice.getAsJsonObject()
+                                        .getAsJsonObject("message")
+                                        .get("content")
+                                        .getAsString()));
+        return contents;
+    }
+
+    private static ModelRequest createRequest(int historySize) {
+        List<ChatMessage> history = new ArrayList<>();
+        for (int i = 0; i < historySize; i++) {
+            LLMRole role = i % 2 == 0 ? LLMRole.USER : LLMRole.ASSISTANT;
+            history.add(new ChatMessage(role, text(i)));
+        }
+        return ModelRequest.builder(text(-1))
+                .systemContext(text(-2))
+                .history(history)
+                .choices(CHOICES)
+                .build();
+    }
+
+    private static byte[] createResponse() {
+        JsonArray choices = new JsonArray();
+        for (int i = 0; i < CHOICES; i++) {
+            JsonObject message = entry(LLMRole.ASSISTANT, text(i));
+            JsonObject choice = new JsonObject();
+            choice.addProperty("index", i);
+            choice.add("message", message);
+            choice.addProperty("finish_reason", "stop");
+            choices.add(choice);
+        }
+
+        JsonObject usage = new JsonObject();
+        usage.addProperty("prompt_tokens", 1000);
+        usage.addProperty("completion_tokens", 300);
+        usage.addProperty("total_tokens", 1300);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("id", "chatcmpl-benchmark");
+        response.addProperty("object", "chat.completion");
+        response.add("choices", choices);
+        response.add("usage", usage);
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Creates a message of {@link #MESSAGE_LENGTH} characters, including some escaped ones. */
+    private static String text(int seed) {
+        StringBuilder text = new StringBuilder(MESSAGE_LENGTH);
+        while (text.length() < MESSAGE_LENGTH) {
+            text.append("Question ").append(seed).append(": \"Why?\" ü\n");
+        }
+        text.setLength(MESSAGE_LENGTH);
+        return text.toString();
+    }
+
+    private static String format(long bytes) {
+        return bytes < 10 * 1024 ? bytes + " B" : bytes / 1024 + " KiB";
+    }
+
+    private interface Task {
+        void run() throws IOException;
+    }
+}
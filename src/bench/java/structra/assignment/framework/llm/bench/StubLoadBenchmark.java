@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.bench;
+
+import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+import structra.assignment.framework.llm.model.ChatGPTModel;
+import structra.assignment.framework.llm.stub.LatencyDistribution;
+import structra.assignment.framework.llm.stub.StubChatServer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load tests {@link ChatGPTModel} against a {@link StubChatServer} injecting the faults of a hosted
+ * model, so that the HTTP path, threading and timeouts of the model are exercised without network
+ * access. Every other request is streamed. Run it with {@code gradle runStubLoadTest}.
+ *
+ * <p>The latencies of successful requests are reported with their percentiles, failed requests
+ * are grouped by the cause of the failure.
+ */
+public final class StubLoadBenchmark {
+
+    private static final int REQUESTS = 2000;
+    private static final int CONCURRENCY = 64;
+
+    private StubLoadBenchmark() {}
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        StubChatServer.Builder builder =
+                StubChatServer.builder()
+                        .latency(LatencyDistribution.logNormal(Duration.ofMillis(200), 0.5))
+                        .errorRate(0.02)
+                        .rateLimitBursts(0.005, 5, Duration.ofSeconds(1))
+                        .resetRate(0.005)
+                        .drip(Duration.ofMillis(2), 16)
+                        .seed(42);
+
+        try (StubChatServer server = builder.build()) {
+            MachineLearningModel model =
+                    ChatGPTModel.builder(() -> "stub").transport(server.getTransport()).build();
+
+            long[] latencies = new long[REQUESTS];
+            AtomicInteger succeeded = new AtomicInteger();
+            Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+            Semaphore permits = new Semaphore(CONCURRENCY);
+            CompletableFuture<?>[] requests = new CompletableFuture<?>[REQUESTS];
+
+            long start = System.nanoTime();
+            for (int i = 0; i < REQUESTS; i++) {
+                permits.acquire();
+                long sent = System.nanoTime();
+                ModelRequest request = ModelRequest.builder("Generate a question").build();
+                CompletableFuture<ModelResponse> response =
+                        i % 2 == 0 ? model.execute(request) : model.stream(request, chunk -> {});
+                requests[i] =
+                        response.whenComplete(
+                                (result, failure) -> {
+                                    permits.release();
+                                    if (failure == null) {
+                                        latencies[succeeded.getAndIncrement()] =
+                                                System.nanoTime() - sent;
+                                    } else {
+                                        failures.computeIfAbsent(
+                                                        causeOf(failure), cause -> new LongAdder())
+                                                .increment();
+                                    }
+                                });
+            }
+            CompletableFuture.allOf(requests).exceptionally(failure -> null).join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long[] sorted = Arrays.copyOf(latencies, succeeded.get());
+            Arrays.sort(sorted);
+            System.out.printf(
+                    "%d requests, %d concurrent: %.1f requests/s%n",
+                    REQUESTS, CONCURRENCY, REQUESTS / seconds);
+            System.out.printf(
+                    "succeeded %d: p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    sorted.length,
+                    percentile(sorted, 0.5),
+                    percentile(sorted, 0.99),
+                    percentile(sorted, 1));
+            new TreeMap<>(failures)
+                    .forEach(
+                            (cause, count) ->
+                                    System.out.printf("failed %d: %s%n", count.sum(), cause));
+            System.out.printf(
+                    "server: %d requests, %d errors, %d rate limited, %d resets%n",
+                    server.getRequests(),
+                    server.getErrors(),
+                    server.getRateLimited(),
+                    server.getResets());
+        }
+    }
+
+    private static String causeOf(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+        return cause.getClass().getSimpleName() + ": " + cause.getMessage();
+    }
+
+    /** Returns the percentile of the sorted latencies in milliseconds. */
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.bench;
+
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import structra.assignment.framework.llm.model.Mimic;
+import structra.assignment.framework.llm.model.QuestionBank;
+import structra.assignment.framework.model.StringConstants;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates question corpora of any size in the layout of {@code questions.json} documented by
+ * {@link Mimic}, so that parsing, deduplication and caches can be stress tested at production
+ * volumes rather than with 50 questions per category.
+ *
+ * <p>Every record is derived from the seed, its category and its index only: the corpus is
+ * reproducible, records can be generated in any order or in parallel and nothing is held in
+ * memory while it is {@link #writeTo(Path, long, long, long) written} or {@link #stream(String,
+ * long) streamed}. A configurable share of the open answer and multiple choice questions is
+ * malformed, i.e. valid JSON violating the schema, e.g. without answers or with a textual
+ * difficulty.
+ *
+ * <p>Run {@code gradle generateSyntheticCorpus --args="<file> [perCategory] [seed]
+ * [malformedShare]"} to write a corpus to disk.
+ */
+public final class SyntheticCorpus {
+
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "ri", "zen", "mar", "ta", "vel", "dor", "sin", "qua", "bel", "ro", "an", "thu",
+        "mi", "gor", "el", "ny", "pas", "ul"
+    };
+
+    private static final String[] FILLERS = {
+        "This is covered in most introductory texts on the topic.",
+        "It is a common source of confusion among students.",
+        "Historical records confirm this beyond reasonable doubt.",
+        "The other options are frequently mistaken for the correct one."
+    };
+
+    private static final double[] DIFFICULTIES = {0.3, 0.4, 0.5, 0.6, 0.7, 0.8, 0.9};
+    private static final int[] POINTS = {1, 2, 3, 5, 10, 15};
+    private static final int CHOICES = 4;
+    private static final int MALFORMATIONS = 4;
+
+    private static final String[] CATEGORIES = {
+        Mimic.NONSENSE, Mimic.OPEN_ANSWER, Mimic.MULTIPLE_CHOICE
+    };
+
+    private final long seed;
+    private final double malformedShare;
+
+    private SyntheticCorpus(Builder builder) {
+        this.seed = builder.seed;
+        this.malformedShare = builder.malformedShare;
+    }
+
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Generates a record.
+     *
+     * @param category the category of the record, one of {@link Mimic#NONSENSE}, {@link
+     *     Mimic#OPEN_ANSWER} and {@link Mimic#MULTIPLE_CHOICE}
+     * @param index the index of the record within its category
+     * @return the record in its compact JSON encoding
+     * @throws IllegalArgumentException If the category is unknown.
+     */
+    @NonNull
+    public String get(@NonNull String category, long index) {
+        StringWriter json = new StringWriter(512);
+        try {
+            write(new JsonWriter(json), category, index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // cannot happen for a string writer
+        }
+        return json.toString();
+    }
+
+    /**
+     * Lazily generates the first records of a category.
+     *
+     * @param category the category of the records
+     * @param count the number of records
+     * @return the records in their compact JSON encoding, in the order of their indices
+     * @throws IllegalArgumentException If the category is unknown.
+     */
+    @NonNull
+    public Stream<String> stream(@NonNull String category, long count) {
+        checkCategory(category);
+        checkCount(count);
+        return LongStream.range(0, count).mapToObj(index -> get(category, index));
+    }
+
+    /**
+     * Generates a question bank holding the first records of every category.
+     *
+     * @param openAnswers the number of open answer questions, at least 1
+     * @param multipleChoices the number of multiple choice questions, at least 1
+     * @param nonsense the number of nonsense records, at least 1
+     * @return the generated bank
+     */
+    @NonNull
+    public QuestionBank toBank(int openAnswers, int multipleChoices, int nonsense) {
+        if (openAnswers < 1 || multipleChoices < 1 || nonsense < 1) {
+            throw new IllegalArgumentException("counts must be at least 1");
+        }
+        Map<String, List<String>> categories = new LinkedHashMap<>();
+        categories.put(Mimic.NONSENSE, collect(Mimic.NONSENSE, nonsense));
+        categories.put(Mimic.OPEN_ANSWER, collect(Mimic.OPEN_ANSWER, openAnswers));
+        categories.put(Mimic.MULTIPLE_CHOICE, collect(Mimic.MULTIPLE_CHOICE, multipleChoices));
+        return QuestionBank.of(categories);
+    }
+
+    /**
+     * Writes the first records of every category to a file, replacing its content.
+     *
+     * @param file the file to write
+     * @param openAnswers the number of open answer questions
+     * @param multipleChoices the number of multiple choice questions
+     * @param nonsense the number of nonsense records
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeTo(@NonNull Path file, long openAnswers, long multipleChoices, long nonsense)
+            throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeTo(writer, openAnswers, multipleChoices, nonsense);
+        }
+    }
+
+    /**
+     * Writes the first records of every category as a single JSON object. The writer is flushed
+     * but not closed.
+     *
+     * @param writer the writer to write to
+     * @param openAnswers the number of open answer questions
+     * @param multipleChoices the number of multiple choice questions
+     * @param nonsense the number of nonsense records
+     * @throws IOException If the writer fails.
+     */
+    public void writeTo(
+            @NonNull Writer writer, long openAnswers, long multipleChoices, long nonsense)
+            throws IOException {
+        checkCount(openAnswers);
+        checkCount(multipleChoices);
+        checkCount(nonsense);
+
+        JsonWriter out = new JsonWriter(writer);
+        out.beginObject();
+        writeCategory(out, Mimic.NONSENSE, nonsense);
+        writeCategory(out, Mimic.OPEN_ANSWER, openAnswers);
+        writeCategory(out, Mimic.MULTIPLE_CHOICE, multipleChoices);
+        out.endObject();
+        out.flush();
+    }
+
+    private List<String> collect(String category, int count) {
+        return stream(category, count).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private void writeCategory(JsonWriter out, String category, long count) throws IOException {
+        out.name(category);
+        out.beginArray();
+        for (long index = 0; index < count; index++) {
+            write(out, category, index);
+        }
+        out.endArray();
+    }
+
+    private void write(JsonWriter out, String category, long index) throws IOException {
+        SplittableRandom random = random(checkCategory(category), index);
+        switch (category) {
+            case Mimic.NONSENSE -> writeNonsense(out, random, 0);
+            case Mimic.OPEN_ANSWER -> writeQuestion(out, random, false);
+            default -> writeQuestion(out, random, true);
+        }
+    }
+
+    private void writeQuestion(JsonWriter out, SplittableRandom random, boolean multipleChoice)
+            throws IOException {
+        // -1 for a well-formed question, otherwise the kind of malformation
+        int malformation =
+                random.nextDouble() < malformedShare ? random.nextInt(MALFORMATIONS) : -1;
+
+        String name = name(random);
+        String text;
+        String answer;
+        String explanation;
+        Function<SplittableRandom, String> distractor;
+        switch (random.nextInt(4)) {
+            case 0 -> {
+                answer = name(random);
+                text = "What is the capital of " + name + "?";
+                explanation = "The capital of " + name + " is " + answer + ".";
+                distractor = SyntheticCorpus::name;
+            }
+            case 1 -> {
+                answer = person(random);
+                text = "Who wrote the book '" + title(random) + "'?";
+                explanation = "The book was written by " + answer + " early in their career.";
+                distractor = SyntheticCorpus::person;
+            }
+            case 2 -> {
+                int year = 1000 + random.nextInt(1020);
+                answer = Integer.toString(year);
+                text = "In which year was the city of " + name + " founded?";
+                explanation = name + " was founded in " + year + ".";
+                distractor = r -> Integer.toString(year + r.nextInt(-200, 201));
+            }
+            default -> {
+                int left = random.nextInt(1000);
+                int right = random.nextInt(1000);
+                answer = Integer.toString(left + right);
+                text = "What is " + left + " + " + right + "?";
+                explanation = left + " plus " + right + " equals " + answer + ".";
+                distractor = r -> Integer.toString(left + right + r.nextInt(-20, 21));
+            }
+        }
+        StringBuilder fullExplanation = new StringBuilder(explanation);
+        for (int i = random.nextInt(3); i > 0; i--) {
+            fullExplanation.append(' ').append(FILLERS[random.nextInt(FILLERS.length)]);
+        }
+
+        out.beginObject();
+        out.name(StringConstants.Questions.QUESTIONS_NAME).beginObject();
+        if (malformation != 0) {
+            out.name(StringConstants.Questions.QUESTION_TEXT).value(text);
+        }
+        out.name(StringConstants.Questions.QUESTION_DIFFICULTY);
+        if (malformation == 1) {
+            out.value("hard");
+        } else {
+            out.value(DIFFICULTIES[random.nextInt(DIFFICULTIES.length)]);
+        }
+        out.name(StringConstants.Overall.POINTS_POSSIBLE)
+                .value(POINTS[random.nextInt(POINTS.length)]);
+        out.name(StringConstants.Questions.QUESTION_EXPLANATION).value(fullExplanation.toString());
+        out.endObject();
+
+        if (malformation != 2) {
+            // a malformation of 3 swaps the shapes of the answers of both question kinds
+            out.name(StringConstants.Answers.ANSWERS_NAME);
+            if (multipleChoice == (malformation != 3)) {
+                writeChoices(out, random, answer, distractor);
+            } else {
+                out.beginObject();
+                out.name(StringConstants.Answers.ANSWER_TEXT).value(answer);
+                out.name(StringConstants.Answers.EXPECTED_ANSWER).value(answer);
+                out.endObject();
+            }
+        }
+        out.endObject();
+    }
+
+    private static void writeChoices(
+            JsonWriter out,
+            SplittableRandom random,
+            String answer,
+            Function<SplittableRandom, String> distractor)
+            throws IOException {
+        Set<String> seen = new HashSet<>();
+        seen.add(answer);
+        List<String> wrong = new ArrayList<>(CHOICES - 1);
+        // distractors drawn from a narrow range may repeat, so the attempts are bounded
+        for (int attempt = 0; wrong.size() < CHOICES - 1 && attempt < 32; attempt++) {
+            String candidate = distractor.apply(random);
+            if (seen.add(candidate)) {
+                wrong.add(candidate);
+            }
+        }
+
+        int correct = random.nextInt(wrong.size() + 1);
+        out.beginArray();
+        for (int i = 0, next = 0; i <= wrong.size(); i++) {
+            boolean expected = i == correct;
+            out.beginObject();
+            out.name(StringConstants.Answers.ANSWER_TEXT)
+                    .value(expected ? answer : wrong.get(next++));
+            out.name(StringConstants.Answers.EXPECTED_ANSWER).value(Boolean.toString(expected));
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+    private static void writeNonsense(JsonWriter out, SplittableRandom random, int depth)
+            throws IOException {
+        out.beginObject();
+        for (int i = random.nextInt(1, 5); i > 0; i--) {
+            out.name(word(random));
+            switch (random.nextInt(depth < 1 ? 6 : 5)) {
+                case 0 -> out.value(random.nextInt(1000));
+                case 1 -> out.value(Math.round(random.nextDouble(100) * 10) / 10.0);
+                case 2 -> out.value(random.nextBoolean());
+                case 3 -> out.value(word(random));
+                case 4 -> {
+                    out.beginArray();
+                    for (int j = random.nextInt(1, 6); j > 0; j--) {
+                        switch (random.nextInt(3)) {
+                            case 0 -> out.value(random.nextInt(100));
+                            case 1 -> out.value(word(random));
+                            default -> out.nullValue();
+                        }
+                    }
+                    out.endArray();
+                }
+                default -> writeNonsense(out, random, depth + 1);
+            }
+        }
+        out.endObject();
+    }
+
+    private SplittableRandom random(int category, long index) {
+        return new SplittableRandom(
+                seed * 0x9E3779B97F4A7C15L + category * 0xC2B2AE3D27D4EB4FL + index);
+    }
+
+    private static int checkCategory(String category) {
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            if (CATEGORIES[i].equals(Objects.requireNonNull(category))) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown category: " + category);
+    }
+
+    private static void checkCount(long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count cannot be negative");
+        }
+    }
+
+    private static String name(SplittableRandom random) {
+        StringBuilder name = new StringBuilder();
+        for (int i = random.nextInt(2, 4); i > 0; i--) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    private static String person(SplittableRandom random) {
+        return name(random) + " " + name(random);
+    }
+
+    private static String title(SplittableRandom random) {
+        return "The " + name(random) + " of " + name(random);
+    }
+
+    private static String word(SplittableRandom random) {
+        char[] word = new char[random.nextInt(3, 7)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println(
+                    "usage: SyntheticCorpus <file> [perCategory] [seed] [malformedShare]");
+            System.exit(1);
+        }
+        Path file = Path.of(args[0]);
+        long perCategory = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        Builder builder = builder();
+        if (args.length > 2) {
+            builder.seed(Long.parseLong(args[2]));
+        }
+        if (args.length > 3) {
+            builder.malformedShare(Double.parseDouble(args[3]));
+        }
+
+        long start = System.nanoTime();
+        builder.build().writeTo(file, perCategory, perCategory, perCategory);
+        System.out.printf(
+                "wrote %d records per category to %s: %.1f MB in %.1f s%n",
+                perCategory,
+                file,
+                Files.size(file) / 1e6,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /** A builder for {@link SyntheticCorpus} instances. */
+    public static final class Builder {
+
+        private long seed;
+        private double malformedShare;
+
+        private Builder() {}
+
+        /** Sets the seed the corpus is derived from, {@code 0} by default. */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Sets the share of malformed open answer and multiple choice questions, {@code 0} by
+         * default.
+         */
+        public Builder malformedShare(double malformedShare) {
+            if (!(malformedShare >= 0 && malformedShare <= 1)) {
+                throw new IllegalArgumentException("malformedShare must be between 0 and 1");
+            }
+            this.malformedShare = malformedShare;
+            return this;
+        }
+
+        @NonNull
+        public SyntheticCorpus build() {
+            return new SyntheticCorpus(this);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.stub;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * The distribution of the time a {@link StubChatServer} waits before answering a request, i.e.
+ * the time to the first byte of the response.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /** Answers immediately. */
+    LatencyDistribution NONE = random -> Duration.ZERO;
+
+    /**
+     * Samples the latency of the next request.
+     *
+     * @param random the source of randomness of the request
+     * @return the latency, not negative
+     */
+    @NonNull
+    Duration sample(@NonNull Random random);
+
+    /**
+     * @param latency the latency of every request
+     * @return a distribution always returning the given latency
+     */
+    @NonNull
+    static LatencyDistribution fixed(@NonNull Duration latency) {
+        Objects.requireNonNull(latency, "latency cannot be null");
+        if (latency.isNegative()) {
+            throw new IllegalArgumentException("latency cannot be negative");
+        }
+        return random -> latency;
+    }
+
+    /**
+     * @param min the minimum latency
+     * @param max the maximum latency
+     * @return a distribution returning latencies evenly distributed between min and max
+     */
+    @NonNull
+    static LatencyDistribution uniform(@NonNull Duration min, @NonNull Duration max) {
+        Objects.requireNonNull(min, "min cannot be null");
+        Objects.requireNonNull(max, "max cannot be null");
+        if (min.isNegative() || max.compareTo(min) < 0) {
+            throw new IllegalArgumentException("min must be positive and not exceed max");
+        }
+        long range = max.minus(min).toNanos();
+        return random -> min.plusNanos((long) (random.nextDouble() * range));
+    }
+
+    /**
+     * Creates a log-normal distribution, which resembles the latencies of hosted models: most
+     * requests are close to the median, but a long tail of requests takes several times as long.
+     *
+     * @param median the median latency
+     * @param sigma the standard deviation of the logarithm of the latency, e.g. {@code 0.5} for a
+     *     99th percentile of about three times the median
+     * @return the log-normal distribution
+     */
+    @NonNull
+    static LatencyDistribution logNormal(@NonNull Duration median, double sigma) {
+        Objects.requireNonNull(median, "median cannot be null");
+        if (median.isNegative() || sigma < 0) {
+            throw new IllegalArgumentException("median and sigma cannot be negative");
+        }
+        long medianNanos = median.toNanos();
+        return random ->
+                Duration.ofNanos((long) (medianNanos * Math.exp(sigma * random.nextGaussian())));
+    }
+}
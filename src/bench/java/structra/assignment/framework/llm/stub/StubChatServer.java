@@ -0,0 +1,656 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.stub;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.NonNull;
+import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ModelExecutors;
+import structra.assignment.framework.llm.model.ChatGPTModel;
+import structra.assignment.framework.llm.tokens.TokenEstimator;
+import structra.assignment.framework.llm.transport.HttpTransport;
+import structra.assignment.framework.llm.transport.ModelHttpException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An embedded server implementing the chat completions contract of the OpenAI API, so that {@link
+ * ChatGPTModel} can be load tested with its real HTTP path, threading and timeouts, but without
+ * network access or API costs. It answers with the open answer questions of {@value #QUESTIONS},
+ * wrapped in the {@link MachineLearningModel#DEFAULT_DELIMITER delimiter}, or unwrapped if the
+ * request asks for a {@code response_format}.
+ *
+ * <p>The parameters {@code n}, {@code stream}, {@code stream_options}, {@code max_tokens} and
+ * {@code stop} are honoured, and the {@code usage} is estimated with {@link
+ * TokenEstimator#DEFAULT}. Any bearer token is accepted. The server injects the faults of a hosted
+ * model as configured by its {@link Builder}:
+ *
+ * <ul>
+ *   <li>the latency until the response headers, drawn from a {@link LatencyDistribution}
+ *   <li>internal server errors with a given probability
+ *   <li>bursts of consecutive {@code 429} responses with a {@code Retry-After} header
+ *   <li>streamed responses dripping out in small chunks
+ *   <li>connections closed without any response
+ * </ul>
+ *
+ * <pre>{@code
+ * try (StubChatServer server = StubChatServer.builder().errorRate(0.01).build()) {
+ *     MachineLearningModel model =
+ *             ChatGPTModel.builder(() -> "stub").transport(server.getTransport()).build();
+ *     ...
+ * }
+ * }</pre>
+ */
+public class StubChatServer implements AutoCloseable {
+
+    /** The path of the chat completions endpoint. */
+    public static final String PATH = "/v1/chat/completions";
+
+    /** The classpath resource holding the answers. */
+    public static final String QUESTIONS = "/questions.json";
+
+    private static final String OPEN_ANSWER = "open_answer";
+    private static final int DEFAULT_THREADS = 256;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int BAD_REQUEST = 400;
+    private static final int UNAUTHORIZED = 401;
+    private static final int SERVER_ERROR = 500;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<String> answers;
+    private final HttpTransport transport;
+
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final double burstRate;
+    private final int burstLength;
+    private final Duration retryAfter;
+    private final double resetRate;
+    private final Duration dripInterval;
+    private final int dripChunkLength;
+
+    /** The seed of the faults and answers, {@code null} if they are not reproducible. */
+    private final Long seed;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger burstRemaining = new AtomicInteger();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+
+    private StubChatServer(Builder builder) throws IOException {
+        this.latency = builder.latency;
+        this.errorRate = builder.errorRate;
+        this.burstRate = builder.burstRate;
+        this.burstLength = builder.burstLength;
+        this.retryAfter = builder.retryAfter;
+        this.resetRate = builder.resetRate;
+        this.dripInterval = builder.dripInterval;
+        this.dripChunkLength = builder.dripChunkLength;
+        this.seed = builder.seed;
+        this.answers = loadAnswers();
+
+        this.executor =
+                ModelExecutors.newBoundedExecutor(
+                        "stub-chat-server", builder.threads, ModelExecutors.DEFAULT_QUEUE_CAPACITY);
+        this.server =
+                HttpServer.create(
+                        new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 0);
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+        server.start();
+        this.transport = new HttpTransport(getEndpoint());
+    }
+
+    /**
+     * Creates a builder for a server answering immediately and without any faults.
+     *
+     * @return a new builder
+     */
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the URI of the chat completions endpoint of this server
+     */
+    @NonNull
+    public URI getEndpoint() {
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort() + PATH);
+    }
+
+    /**
+     * Returns the transport to this server. It is backed by a single client, so all models using
+     * it share its connections, like models using the {@link HttpTransport#shared() shared}
+     * transport of the hosted endpoint.
+     *
+     * @return the transport of this server
+     */
+    @NonNull
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    /** @return the number of requests received */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /** @return the number of requests answered with an internal server error */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /** @return the number of requests answered with {@code 429 Too Many Requests} */
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    /** @return the number of connections closed without a response */
+    public long getResets() {
+        return resets.sum();
+    }
+
+    /** Stops the server, closing all open connections. */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        Random random = newRandom();
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendError(exchange, METHOD_NOT_ALLOWED, "Only POST is supported");
+                return;
+            }
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization == null || !authorization.startsWith("Bearer ")) {
+                sendError(exchange, UNAUTHORIZED, "Missing bearer token");
+                return;
+            }
+
+            JsonObject request;
+            try (InputStream body = exchange.getRequestBody()) {
+                request =
+                        JsonParser.parseReader(new InputStreamReader(body, StandardCharsets.UTF_8))
+                                .getAsJsonObject();
+            } catch (JsonParseException | IllegalStateException e) {
+                sendError(exchange, BAD_REQUEST, "Malformed request: " + e.getMessage());
+                return;
+            }
+
+            TimeUnit.NANOSECONDS.sleep(latency.sample(random).toNanos());
+
+            if (random.nextDouble() < resetRate) {
+                resets.increment();
+                return; // closing the exchange without headers closes the connection
+            }
+            if (isRateLimited(random)) {
+                rateLimited.increment();
+                long seconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+                exchange.getResponseHeaders().set("Retry-After", Long.toString(seconds));
+                sendError(exchange, ModelHttpException.TOO_MANY_REQUESTS, "Rate limit reached");
+                return;
+            }
+            if (random.nextDouble() < errorRate) {
+                errors.increment();
+                sendError(exchange, SERVER_ERROR, "The server had an error");
+                return;
+            }
+
+            List<Completion> completions = complete(request, random);
+            if (request.has("stream") && request.get("stream").getAsBoolean()) {
+                stream(exchange, request, completions);
+            } else {
+                send(exchange, 200, toResponse(request, completions).toString());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // the server is stopping
+        } catch (IOException e) {
+            // the client closed the connection, e.g. since it cancelled the request
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the source of randomness of the next request. With a seed, it is derived from the
+     * seed and the number of the request, so that the handler threads do not interleave their
+     * draws.
+     */
+    private Random newRandom() {
+        if (seed == null) {
+            return ThreadLocalRandom.current();
+        }
+        // the finalizer of SplitMix64 decorrelates the seeds of consecutive requests
+        long z = seed + sequence.getAndIncrement() * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new Random(z ^ (z >>> 31));
+    }
+
+    /** Starts a burst of rate limited requests with the burst rate, or continues a running one. */
+    private boolean isRateLimited(Random random) {
+        if (burstRemaining.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+            return true;
+        }
+        if (burstLength > 0 && random.nextDouble() < burstRate) {
+            burstRemaining.set(burstLength - 1);
+            return true;
+        }
+        return false;
+    }
+
+    /** Generates the choices of a request, applying its stop sequences and token limit. */
+    private List<Completion> complete(JsonObject request, Random random) {
+        int choices = request.has("n") ? request.get("n").getAsInt() : 1;
+        boolean structured = request.has("response_format");
+        List<String> stop = new ArrayList<>();
+        if (request.has("stop")) {
+            JsonElement element = request.get("stop");
+            if (element.isJsonArray()) {
+                element.getAsJsonArray().forEach(sequence -> stop.add(sequence.getAsString()));
+            } else {
+                stop.add(element.getAsString());
+            }
+        }
+        int maxTokens = request.has("max_tokens") ? request.get("max_tokens").getAsInt() : 0;
+
+        List<Completion> completions = new ArrayList<>(choices);
+        for (int i = 0; i < choices; i++) {
+            String answer = answers.get(random.nextInt(answers.size()));
+            String content =
+                    structured
+                            ? answer
+                            : MachineLearningModel.DEFAULT_DELIMITER
+                                    + answer
+                                    + MachineLearningModel.DEFAULT_DELIMITER;
+
+            for (String sequence : stop) {
+                int index = content.indexOf(sequence);
+                if (index >= 0) {
+                    content = content.substring(0, index);
+                }
+            }
+
+            String finishReason = "stop";
+            if (maxTokens > 0 && TokenEstimator.DEFAULT.count(content) > maxTokens) {
+                content = truncate(content, maxTokens);
+                finishReason = "length";
+            }
+            completions.add(new Completion(content, finishReason));
+        }
+        return completions;
+    }
+
+    /** Returns the longest prefix of the content within the token limit. */
+    private static String truncate(String content, int maxTokens) {
+        int low = 0;
+        int high = content.length();
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (TokenEstimator.DEFAULT.count(content.substring(0, middle)) <= maxTokens) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return content.substring(0, low);
+    }
+
+    private static JsonObject toResponse(JsonObject request, List<Completion> completions) {
+        JsonArray choices = new JsonArray();
+        for (int i = 0; i < completions.size(); i++) {
+            Completion completion = completions.get(i);
+            JsonObject message = new JsonObject();
+            message.addProperty("role", "assistant");
+            message.addProperty("content", completion.content);
+
+            JsonObject choice = new JsonObject();
+            choice.addProperty("index", i);
+            choice.add("message", message);
+            choice.addProperty("finish_reason", completion.finishReason);
+            choices.add(choice);
+        }
+
+        JsonObject response = newCompletionObject("chat.completion", request);
+        response.add("choices", choices);
+        response.add("usage", usageOf(request, completions));
+        return response;
+    }
+
+    private static JsonObject usageOf(JsonObject request, List<Completion> completions) {
+        int completionTokens = 0;
+        for (Completion completion : completions) {
+            completionTokens += TokenEstimator.DEFAULT.count(completion.content);
+        }
+
+        int promptTokens = 0;
+        for (JsonElement message : request.getAsJsonArray("messages")) {
+            JsonElement content = message.getAsJsonObject().get("content");
+            if (content != null && content.isJsonPrimitive()) {
+                promptTokens += TokenEstimator.DEFAULT.count(content.getAsString());
+            }
+        }
+        JsonObject usage = new JsonObject();
+        usage.addProperty("prompt_tokens", promptTokens);
+        usage.addProperty("completion_tokens", completionTokens);
+        usage.addProperty("total_tokens", promptTokens + completionTokens);
+        return usage;
+    }
+
+    /**
+     * Streams the choices as server-sent events, one choice after another, in chunks of the drip
+     * length separated by the drip interval. The usage follows in a final event without choices
+     * if the request asks for it with {@code stream_options.include_usage}.
+     */
+    private void stream(HttpExchange exchange, JsonObject request, List<Completion> completions)
+            throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream body = exchange.getResponseBody();
+
+        for (int i = 0; i < completions.size(); i++) {
+            Completion completion = completions.get(i);
+            String content = completion.content;
+            for (int start = 0; start < content.length(); ) {
+                int end = Math.min(content.length(), start + dripChunkLength);
+                if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+                    end++; // keeps surrogate pairs in one chunk
+                }
+                JsonObject delta = new JsonObject();
+                delta.addProperty("content", content.substring(start, end));
+                writeEvent(body, newChunk(i, delta, null).toString());
+                start = end;
+                TimeUnit.NANOSECONDS.sleep(dripInterval.toNanos());
+            }
+            writeEvent(body, newChunk(i, new JsonObject(), completion.finishReason).toString());
+        }
+        if (includesUsage(request)) {
+            JsonObject chunk = newCompletionObject("chat.completion.chunk", null);
+            chunk.add("choices", new JsonArray());
+            chunk.add("usage", usageOf(request, completions));
+            writeEvent(body, chunk.toString());
+        }
+        writeEvent(body, "[DONE]");
+    }
+
+    private static boolean includesUsage(JsonObject request) {
+        JsonElement options = request.get("stream_options");
+        if (options == null || !options.isJsonObject()) {
+            return false;
+        }
+        JsonElement includeUsage = options.getAsJsonObject().get("include_usage");
+        return includeUsage != null
+                && includeUsage.isJsonPrimitive()
+                && includeUsage.getAsBoolean();
+    }
+
+    private static JsonObject newChunk(int index, JsonObject delta, String finishReason) {
+        JsonObject choice = new JsonObject();
+        choice.addProperty("index", index);
+        choice.add("delta", delta);
+        choice.addProperty("finish_reason", finishReason);
+
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+        JsonObject chunk = newCompletionObject("chat.completion.chunk", null);
+        chunk.add("choices", choices);
+        return chunk;
+    }
+
+    private static JsonObject newCompletionObject(String type, JsonObject request) {
+        JsonObject object = new JsonObject();
+        object.addProperty("id", "chatcmpl-stub");
+        object.addProperty("object", type);
+        object.addProperty("created", System.currentTimeMillis() / 1000);
+        if (request != null && request.has("model")) {
+            object.add("model", request.get("model"));
+        }
+        return object;
+    }
+
+    private static void writeEvent(OutputStream body, String data) throws IOException {
+        body.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        body.flush();
+    }
+
+    private static void sendError(HttpExchange exchange, int statusCode, String message)
+            throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("message", message);
+        error.addProperty(
+                "type", statusCode >= SERVER_ERROR ? "server_error" : "invalid_request_error");
+        JsonObject body = new JsonObject();
+        body.add("error", error);
+        send(exchange, statusCode, body.toString());
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** Loads the open answer questions of {@value #QUESTIONS} in their compact JSON encoding. */
+    private static List<String> loadAnswers() {
+        try (InputStream questions = StubChatServer.class.getResourceAsStream(QUESTIONS)) {
+            if (questions == null) {
+                throw new IOException("Resource not found: " + QUESTIONS);
+            }
+            JsonObject root =
+                    JsonParser.parseReader(new InputStreamReader(questions, StandardCharsets.UTF_8))
+                            .getAsJsonObject();
+            List<String> answers = new ArrayList<>();
+            root.getAsJsonArray(OPEN_ANSWER).forEach(answer -> answers.add(answer.toString()));
+            return answers;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load the answers of the stub server", e);
+        }
+    }
+
+    /** A generated choice. */
+    private static final class Completion {
+        private final String content;
+        private final String finishReason;
+
+        private Completion(String content, String finishReason) {
+            this.content = content;
+            this.finishReason = finishReason;
+        }
+    }
+
+    /** A builder for {@link StubChatServer} instances. */
+    public static final class Builder {
+
+        private int port;
+        private int threads = DEFAULT_THREADS;
+        private LatencyDistribution latency = LatencyDistribution.NONE;
+        private double errorRate;
+        private double burstRate;
+        private int burstLength;
+        private Duration retryAfter = Duration.ofSeconds(1);
+        private double resetRate;
+        private Duration dripInterval = Duration.ZERO;
+        private int dripChunkLength = Integer.MAX_VALUE;
+        private Long seed;
+
+        private Builder() {}
+
+        /** Sets the port to listen on, {@code 0} for any free port, which is the default. */
+        public Builder port(int port) {
+            if (port < 0 || port > 0xFFFF) {
+                throw new IllegalArgumentException("port must be between 0 and 65535");
+            }
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads serving requests, {@code 256} by default. A
+         * thread is blocked for the whole latency of a request, so this bounds the number of
+         * concurrent requests.
+         */
+        public Builder threads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be at least 1");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /** Sets the distribution of the time to the response headers, none by default. */
+        public Builder latency(@NonNull LatencyDistribution latency) {
+            this.latency = Objects.requireNonNull(latency, "latency cannot be null");
+            return this;
+        }
+
+        /** Sets the probability of a {@code 500} response, {@code 0} by default. */
+        public Builder errorRate(double errorRate) {
+            this.errorRate = requireProbability(errorRate, "errorRate");
+            return this;
+        }
+
+        /**
+         * Makes the server answer bursts of consecutive requests with {@code 429}, as if a rate
+         * limit was reached. No bursts occur by default.
+         *
+         * @param burstRate the probability of a request starting a burst
+         * @param burstLength the number of requests rejected per burst
+         * @param retryAfter the delay sent in the {@code Retry-After} header, rounded up to
+         *     seconds
+         */
+        public Builder rateLimitBursts(
+                double burstRate, int burstLength, @NonNull Duration retryAfter) {
+            if (burstLength < 1) {
+                throw new IllegalArgumentException("burstLength must be at least 1");
+            }
+            Objects.requireNonNull(retryAfter, "retryAfter cannot be null");
+            if (retryAfter.isNegative()) {
+                throw new IllegalArgumentException("retryAfter cannot be negative");
+            }
+            this.burstRate = requireProbability(burstRate, "burstRate");
+            this.burstLength = burstLength;
+            this.retryAfter = retryAfter;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a connection being closed without any response, {@code 0} by
+         * default.
+         */
+        public Builder resetRate(double resetRate) {
+            this.resetRate = requireProbability(resetRate, "resetRate");
+            return this;
+        }
+
+        /**
+         * Makes streamed responses drip out slowly. By default, every choice is sent as a single
+         * chunk without delay.
+         *
+         * @param interval the delay after every chunk
+         * @param chunkLength the number of characters per chunk
+         */
+        public Builder drip(@NonNull Duration interval, int chunkLength) {
+            Objects.requireNonNull(interval, "interval cannot be null");
+            if (interval.isNegative()) {
+                throw new IllegalArgumentException("interval cannot be negative");
+            }
+            if (chunkLength < 1) {
+                throw new IllegalArgumentException("chunkLength must be at least 1");
+            }
+            this.dripInterval = interval;
+            this.dripChunkLength = chunkLength;
+            return this;
+        }
+
+        /**
+         * Sets the seed of the faults and answers. The n-th request received draws the same
+         * latency, faults and answers in every run; which request is the n-th depends on the
+         * order of arrival, as does the request a rate limit burst continues with.
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Creates and starts the server.
+         *
+         * @return the running server
+         * @throws IOException If the server cannot be bound to its port.
+         * @throws UncheckedIOException If the answers cannot be loaded.
+         */
+        @NonNull
+        public StubChatServer build() throws IOException {
+            return new StubChatServer(this);
+        }
+
+        private static double requireProbability(double probability, String name) {
+            if (!(probability >= 0 && probability <= 1)) {
+                throw new IllegalArgumentException(name + " must be between 0 and 1");
+            }
+            return probability;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm;
+
+import lombok.NonNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Propagates the cancellation of futures through the generation pipeline. Futures derived from
+ * another one, e.g. via {@link CompletableFuture#thenApply}, do not cancel their source when they
+ * are cancelled, so without propagation a cancelled call would keep its HTTP exchange running.
+ */
+public final class Cancellation {
+
+    private Cancellation() {}
+
+    /**
+     * Cancels the source once the dependent future completes before it, i.e. once the dependent
+     * future is cancelled or times out, since the result of the source is no longer needed then.
+     *
+     * @param dependent the future handed to the caller
+     * @param source the future producing the result of the dependent future
+     * @return the dependent future
+     */
+    @NonNull
+    public static <T> CompletableFuture<T> propagate(
+            @NonNull CompletableFuture<T> dependent, @NonNull Future<?> source) {
+        dependent.whenComplete(
+                (result, failure) -> {
+                    if (!source.isDone()) {
+                        source.cancel(true);
+                    }
+                });
+        return dependent;
+    }
+}
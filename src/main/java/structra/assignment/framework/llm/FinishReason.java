@@ -0,0 +1,69 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm;
+
+import lombok.NonNull;
+
+/**
+ * The reason a model stopped generating a choice of a {@link ModelResponse}.
+ */
+public enum FinishReason {
+
+    /** The model completed the response or reached a stop sequence of the request. */
+    STOP,
+
+    /** The response was cut off at the token limit of the request or the model. */
+    LENGTH,
+
+    /** The response was cut off by the content filter. */
+    CONTENT_FILTER,
+
+    /** Any other reason, e.g. a tool call. */
+    OTHER;
+
+    /**
+     * Maps the {@code finish_reason} of a chat completion to its constant.
+     *
+     * @param reason the reason as reported by the API
+     * @return the matching constant, {@link #OTHER} for unknown reasons
+     */
+    @NonNull
+    public static FinishReason of(@NonNull String reason) {
+        return switch (reason) {
+            case "stop" -> STOP;
+            case "length" -> LENGTH;
+            case "content_filter" -> CONTENT_FILTER;
+            default -> OTHER;
+        };
+    }
+
+    /**
+     * @return whether the response was cut off before the model completed it
+     */
+    public boolean isTruncated() {
+        return this == LENGTH || this == CONTENT_FILTER;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.history.HistoryPolicy;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * A {@link MachineLearningModel} forwarding all requests to another model. Subclasses decorate
+ * the delegate by overriding {@link #execute(ModelRequest)} and {@link #stream(ModelRequest,
+ * Consumer)}.
+ *
+ * <p>The conversation used by {@link #setContext(String)} and {@link #execute(String)} is a session
+ * of this model, so requests made through it pass the decoration as well.
+ */
+public abstract class ForwardingModel implements MachineLearningModel {
+
+    protected final MachineLearningModel delegate;
+
+    private final ModelSession defaultSession;
+
+    /**
+     * @param delegate the model receiving the forwarded requests
+     */
+    protected ForwardingModel(@NonNull MachineLearningModel delegate) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate cannot be null");
+        this.defaultSession = new ModelSession(this, "", delegate.getHistoryPolicy());
+    }
+
+    @Override
+    public void setContext(String systemContext) {
+        defaultSession.setContext(systemContext);
+    }
+
+    @Override
+    public CompletableFuture<String> execute(String prompt) {
+        return defaultSession.execute(prompt);
+    }
+
+    @Override
+    public CompletableFuture<String> stream(String prompt, Consumer<String> onChunk) {
+        return defaultSession.stream(prompt, onChunk);
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> execute(ModelRequest request) {
+        return delegate.execute(request);
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> stream(ModelRequest request, Consumer<String> onChunk) {
+        return delegate.stream(request, onChunk);
+    }
+
+    /**
+     * @return the history policy of the delegate
+     */
+    @Override
+    public HistoryPolicy getHistoryPolicy() {
+        return delegate.getHistoryPolicy();
+    }
+}
@@ -1,11 +1,19 @@
 package structra.assignment.framework.llm;
 
+import structra.assignment.framework.llm.history.HistoryPolicy;
+
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * A generic interface for machine learning models, designed to accommodate various types of ML
  * tasks, such as text generation, embeddings, classification, and more.
  *
+ * <p>{@link #setContext(String)} and {@link #execute(String)} operate on a single conversation
+ * shared by all callers of the instance. Callers which may run concurrently, e.g. one per user,
+ * should use their own {@link ModelSession} via {@link #openSession(String)} or send complete
+ * {@link ModelRequest}s instead.
+ *
  * @author Riko Torun
  * @author Lennart Köhler
  * @author Moritz Wiedemann
@@ -29,4 +37,71 @@ public interface MachineLearningModel {
      * @return A {@link CompletableFuture} containing the {@link String} result of the operation.
      */
     CompletableFuture<String> execute(String prompt);
+
+    /**
+     * Generates a response like {@link #execute(String)}, but passes parts of the response to
+     * {@code onChunk} while it is being generated. Concatenating all chunks in order yields the
+     * complete response.
+     *
+     * @implNote Models which cannot stream deliver the complete response as a single chunk.
+     * @param prompt The prompt(s) for the model.
+     * @param onChunk Receives the parts of the response in order. It may be called from any thread.
+     * @return A {@link CompletableFuture} containing the complete {@link String} result.
+     */
+    default CompletableFuture<String> stream(String prompt, Consumer<String> onChunk) {
+        return execute(prompt)
+                .thenApply(
+                        response -> {
+                            onChunk.accept(response);
+                            return response;
+                        });
+    }
+
+    /**
+     * Generates a response to a self-contained request. Implementations must not keep any state
+     * between requests, so this method is safe to be called concurrently for any number of
+     * conversations.
+     *
+     * @param request The request containing the system context, history and prompt.
+     * @return A {@link CompletableFuture} containing the {@link ModelResponse}.
+     */
+    CompletableFuture<ModelResponse> execute(ModelRequest request);
+
+    /**
+     * Generates a response to a self-contained request like {@link #execute(ModelRequest)}, but
+     * passes parts of the response to {@code onChunk} while it is being generated.
+     *
+     * @implNote Models which cannot stream deliver the complete response as a single chunk.
+     * @param request The request containing the system context, history and prompt.
+     * @param onChunk Receives the parts of the response in order. It may be called from any thread.
+     * @return A {@link CompletableFuture} containing the complete {@link ModelResponse}.
+     */
+    default CompletableFuture<ModelResponse> stream(
+            ModelRequest request, Consumer<String> onChunk) {
+        return execute(request)
+                .thenApply(
+                        response -> {
+                            onChunk.accept(response.getContent());
+                            return response;
+                        });
+    }
+
+    /**
+     * Opens a new, independent conversation with this model.
+     *
+     * @param systemContext The initial system context of the conversation.
+     * @return a new session, bounded by the {@link #getHistoryPolicy()} of this model
+     */
+    default ModelSession openSession(String systemContext) {
+        return new ModelSession(this, systemContext, getHistoryPolicy());
+    }
+
+    /**
+     * Returns the policy bounding the history of the sessions of this model.
+     *
+     * @return {@link HistoryPolicy#DEFAULT} by default
+     */
+    default HistoryPolicy getHistoryPolicy() {
+        return HistoryPolicy.DEFAULT;
+    }
 }
@@ -0,0 +1,178 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm;
+
+import lombok.NonNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory methods for the executors running the blocking I/O of {@link MachineLearningModel}
+ * requests. Blocking I/O must not run on the common {@link java.util.concurrent.ForkJoinPool},
+ * since it would starve unrelated tasks and cap the number of concurrent requests at roughly the
+ * number of cores.
+ *
+ * <p>On JDK 21 and newer, one virtual thread is used per request. The build targets Java 17, so
+ * virtual threads are detected at runtime. Older runtimes fall back to a bounded pool of named
+ * platform threads, whose load can be monitored via the getters of {@link ThreadPoolExecutor}.
+ */
+public final class ModelExecutors {
+
+    public static final int DEFAULT_POOL_SIZE = 64;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private ModelExecutors() {}
+
+    /**
+     * Returns the executor shared by all models which do not specify their own.
+     *
+     * @return the shared I/O executor
+     */
+    @NonNull
+    public static ExecutorService shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Creates a new executor for blocking I/O: one virtual thread per task if the runtime supports
+     * it, a bounded pool of {@value #DEFAULT_POOL_SIZE} threads otherwise.
+     *
+     * @param name the prefix of the thread names
+     * @return the new executor
+     */
+    @NonNull
+    public static ExecutorService newIoExecutor(@NonNull String name) {
+        ExecutorService virtual = newVirtualThreadExecutor(name);
+        if (virtual != null) {
+            return virtual;
+        }
+        return newBoundedExecutor(name, DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a new bounded pool of daemon threads named {@code <name>-<n>}. Tasks exceeding the
+     * queue capacity are rejected with a {@link java.util.concurrent.RejectedExecutionException}.
+     *
+     * @param name the prefix of the thread names
+     * @param poolSize the maximum number of threads
+     * @param queueCapacity the maximum number of waiting tasks
+     * @return the new executor
+     */
+    @NonNull
+    public static ThreadPoolExecutor newBoundedExecutor(
+            @NonNull String name, int poolSize, int queueCapacity) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be at least 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be at least 1");
+        }
+
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(
+                        poolSize,
+                        poolSize,
+                        60,
+                        TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(queueCapacity),
+                        namedDaemonThreads(name),
+                        new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return whether the runtime supports virtual threads
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VirtualThreads.SUPPORTED;
+    }
+
+    private static ThreadFactory namedDaemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Creates an executor starting a new, named virtual thread per task via reflection.
+     *
+     * @return the executor, or {@code null} if virtual threads are not supported
+     */
+    private static ExecutorService newVirtualThreadExecutor(String name) {
+        if (!isVirtualThreadSupported()) {
+            return null;
+        }
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder =
+                    builderType
+                            .getMethod("name", String.class, long.class)
+                            .invoke(builder, name + "-", 1L);
+            ThreadFactory factory =
+                    (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService)
+                    Executors.class
+                            .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                            .invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** Detects virtual thread support once. They are a preview feature before JDK 21. */
+    private static final class VirtualThreads {
+        private static final boolean SUPPORTED = detect();
+
+        private static boolean detect() {
+            if (Runtime.version().feature() < 21) {
+                return false;
+            }
+            try {
+                Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                Thread.class.getMethod("ofVirtual");
+                return true;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    }
+
+    /** Lazily creates the shared executor on first use. */
+    private static final class SharedHolder {
+        private static final ExecutorService INSTANCE = newIoExecutor("model-io");
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import structra.assignment.framework.llm.context.ChatMessage;
+import structra.assignment.framework.llm.context.LLMRole;
+import structra.assignment.framework.llm.tracing.Tracing;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * A single, self-contained request to a {@link MachineLearningModel}. It carries everything the
+ * model needs for one generation, so models do not have to keep any per-conversation state and
+ * can serve any number of concurrent conversations.
+ *
+ * <p>Instances are immutable and created with a {@link Builder}.
+ *
+ * @see ModelSession
+ */
+@Getter
+public final class ModelRequest {
+
+    /** The maximum number of stop sequences of a request, as accepted by the API. */
+    public static final int MAX_STOP_SEQUENCES = 4;
+
+    /** The {@link #getTag() tag} of requests not assigned to any group. */
+    public static final String DEFAULT_TAG = "default";
+
+    /** The system context guiding the behaviour of the model for this request. */
+    private final String systemContext;
+
+    /** The previous messages of the conversation, oldest message first. */
+    private final List<ChatMessage> history;
+
+    /**
+     * The prompt for the model as a {@link LLMRole#USER} message. It is shared by all copies of
+     * this request, so that a session can append it to its history without encoding it again.
+     */
+    private final ChatMessage promptMessage;
+
+    /** The number of alternative responses to generate for the prompt. */
+    private final int choices;
+
+    @Getter(AccessLevel.NONE)
+    private final Duration timeout;
+
+    @Getter(AccessLevel.NONE)
+    private final ResponseFormat responseFormat;
+
+    @Getter(AccessLevel.NONE)
+    private final int maxTokens;
+
+    /**
+     * The sequences at which the model stops generating. A sequence the model stopped at is not
+     * part of the response. They are not sent along with a {@link #getResponseFormat() response
+     * format} the model applies, since a sequence could only match inside the JSON then.
+     */
+    private final List<String> stopSequences;
+
+    /**
+     * The label grouping the request in metrics, e.g. the question target it generates for. It
+     * does not affect the response.
+     */
+    private final String tag;
+
+    /**
+     * The trace the request belongs to, {@link Tracing#NO_TRACE} if it is not traced. It does not
+     * affect the response.
+     */
+    private final long traceId;
+
+    private ModelRequest(Builder builder) {
+        this.systemContext = builder.systemContext;
+        this.history = List.copyOf(builder.history);
+        this.promptMessage = builder.promptMessage;
+        this.choices = builder.choices;
+        this.timeout = builder.timeout;
+        this.responseFormat = builder.responseFormat;
+        this.maxTokens = builder.maxTokens;
+        this.stopSequences = List.copyOf(builder.stopSequences);
+        this.tag = builder.tag;
+        this.traceId = builder.traceId;
+    }
+
+    /**
+     * @return the prompt for the model
+     */
+    @NonNull
+    public String getPrompt() {
+        return promptMessage.getContent();
+    }
+
+    /**
+     * Returns the maximum time the caller is willing to wait for the response. Models abort
+     * requests exceeding it.
+     *
+     * @return the timeout, or nothing if the caller waits indefinitely
+     */
+    @NonNull
+    public Optional<Duration> getTimeout() {
+        return Optional.ofNullable(timeout);
+    }
+
+    /**
+     * Returns the schema the response has to adhere to, if the model supports structured output.
+     *
+     * @return the format of the response, or nothing if the response is free text
+     */
+    @NonNull
+    public Optional<ResponseFormat> getResponseFormat() {
+        return Optional.ofNullable(responseFormat);
+    }
+
+    /**
+     * Returns the maximum number of tokens generated per choice. Responses reaching it are cut off
+     * and {@link ModelResponse#isTruncated() truncated}.
+     *
+     * @return the token limit, or nothing if the limit of the model applies
+     */
+    @NonNull
+    public OptionalInt getMaxTokens() {
+        return maxTokens == 0 ? OptionalInt.empty() : OptionalInt.of(maxTokens);
+    }
+
+    /**
+     * Creates a builder for a request with the given prompt, an empty system context and no
+     * history.
+     *
+     * @param prompt The prompt for the model.
+     * @return a new builder
+     */
+    @NonNull
+    public static Builder builder(@NonNull String prompt) {
+        return new Builder(
+                new ChatMessage(
+                        LLMRole.USER, Objects.requireNonNull(prompt, "prompt cannot be null")));
+    }
+
+    /**
+     * Creates a builder initialized with the values of this request.
+     *
+     * @return a new builder
+     */
+    @NonNull
+    public Builder toBuilder() {
+        return new Builder(promptMessage)
+                .systemContext(systemContext)
+                .history(history)
+                .choices(choices)
+                .timeout(timeout)
+                .responseFormat(responseFormat)
+                .maxTokens(maxTokens)
+                .stopSequences(stopSequences)
+                .tag(tag)
+                .traceId(traceId);
+    }
+
+    /** A builder for {@link ModelRequest} instances. */
+    public static final class Builder {
+
+        private final ChatMessage promptMessage;
+        private String systemContext = "";
+        private List<ChatMessage> history = List.of();
+        private int choices = 1;
+        private Duration timeout;
+        private ResponseFormat responseFormat;
+        private int maxTokens;
+        private List<String> stopSequences = List.of();
+        private String tag = DEFAULT_TAG;
+        private long traceId = Tracing.NO_TRACE;
+
+        private Builder(ChatMessage promptMessage) {
+            this.promptMessage = promptMessage;
+        }
+
+        public Builder systemContext(@NonNull String systemContext) {
+            this.systemContext = Objects.requireNonNull(systemContext);
+            return this;
+        }
+
+        public Builder history(@NonNull List<ChatMessage> history) {
+            this.history = Objects.requireNonNull(history);
+            return this;
+        }
+
+        /**
+         * Sets the number of alternative responses to generate, {@code 1} by default. All
+         * choices share the prompt, so generating several of them in one request is cheaper than
+         * sending one request per choice.
+         *
+         * @see ModelResponse#getChoices()
+         */
+        public Builder choices(int choices) {
+            if (choices < 1) {
+                throw new IllegalArgumentException("choices must be at least 1");
+            }
+            this.choices = choices;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time the caller is willing to wait for the response, {@code null} to
+         * wait indefinitely.
+         */
+        public Builder timeout(Duration timeout) {
+            if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+                throw new IllegalArgumentException("timeout must be positive");
+            }
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Sets the schema the response has to adhere to, {@code null} for a free text response.
+         */
+        public Builder responseFormat(ResponseFormat responseFormat) {
+            this.responseFormat = responseFormat;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of tokens generated per choice, {@code 0} to apply the limit of
+         * the model.
+         */
+        public Builder maxTokens(int maxTokens) {
+            if (maxTokens < 0) {
+                throw new IllegalArgumentException("maxTokens cannot be negative");
+            }
+            this.maxTokens = maxTokens;
+            return this;
+        }
+
+        /**
+         * Sets the sequences at which the model stops generating, at most {@value
+         * #MAX_STOP_SEQUENCES}.
+         */
+        public Builder stopSequences(@NonNull List<String> stopSequences) {
+            if (stopSequences.size() > MAX_STOP_SEQUENCES) {
+                throw new IllegalArgumentException(
+                        "stopSequences cannot exceed " + MAX_STOP_SEQUENCES + " sequences");
+            }
+            for (String sequence : stopSequences) {
+                if (sequence == null || sequence.isEmpty()) {
+                    throw new IllegalArgumentException(
+                            "stopSequences cannot contain empty sequences");
+                }
+            }
+            this.stopSequences = stopSequences;
+            return this;
+        }
+
+        /**
+         * Sets the label grouping the request in metrics, {@value ModelRequest#DEFAULT_TAG} by
+         * default.
+         */
+        public Builder tag(@NonNull String tag) {
+            this.tag = Objects.requireNonNull(tag, "tag cannot be null");
+            return this;
+        }
+
+        /** Sets the trace the request belongs to, {@link Tracing#NO_TRACE} by default. */
+        public Builder traceId(long traceId) {
+            this.traceId = traceId;
+            return this;
+        }
+
+        @NonNull
+        public ModelRequest build() {
+            return new ModelRequest(this);
+        }
+    }
+}
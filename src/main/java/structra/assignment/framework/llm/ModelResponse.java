@@ -0,0 +1,162 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The result of a {@link ModelRequest}.
+ */
+@Data
+public class ModelResponse {
+
+    /** The generated content, i.e. the first of the {@link #choices}. */
+    private final String content;
+
+    /** All generated alternatives, in the order of their index. */
+    private final List<String> choices;
+
+    @Getter(AccessLevel.NONE)
+    private final TokenUsage usage;
+
+    @Getter(AccessLevel.NONE)
+    private final List<FinishReason> finishReasons;
+
+    public ModelResponse(@NonNull String content) {
+        this.content = Objects.requireNonNull(content, "content cannot be null");
+        this.choices = List.of(content);
+        this.usage = null;
+        this.finishReasons = List.of();
+    }
+
+    /**
+     * Creates a response consisting of several alternatives.
+     *
+     * @param choices the generated alternatives, at least one
+     */
+    public ModelResponse(@NonNull List<String> choices) {
+        this(choices, null);
+    }
+
+    /**
+     * Creates a response consisting of several alternatives.
+     *
+     * @param choices the generated alternatives, at least one
+     * @param usage the tokens used by the request as reported by the model, may be {@code null}
+     */
+    public ModelResponse(@NonNull List<String> choices, TokenUsage usage) {
+        this(choices, usage, List.of());
+    }
+
+    /**
+     * Creates a response consisting of several alternatives.
+     *
+     * @param choices the generated alternatives, at least one
+     * @param usage the tokens used by the request as reported by the model, may be {@code null}
+     * @param finishReasons the finish reason of every choice, in the same order; {@code null}
+     *     elements and missing trailing elements stand for unknown reasons
+     */
+    public ModelResponse(
+            @NonNull List<String> choices,
+            TokenUsage usage,
+            @NonNull List<FinishReason> finishReasons) {
+        if (choices.isEmpty()) {
+            throw new IllegalArgumentException("choices cannot be empty");
+        }
+        if (finishReasons.size() > choices.size()) {
+            throw new IllegalArgumentException("finishReasons cannot outnumber choices");
+        }
+        this.choices = List.copyOf(choices);
+        this.content = this.choices.get(0);
+        this.usage = usage;
+        this.finishReasons = Collections.unmodifiableList(new ArrayList<>(finishReasons));
+    }
+
+    /**
+     * Returns the tokens used by the request, as reported by the model.
+     *
+     * @return the usage, or nothing if the model did not report it
+     */
+    @NonNull
+    public Optional<TokenUsage> getUsage() {
+        return Optional.ofNullable(usage);
+    }
+
+    /**
+     * Returns why the model stopped generating a choice.
+     *
+     * @param choice the index of the choice
+     * @return the finish reason, or nothing if the model did not report it
+     * @throws IndexOutOfBoundsException if there is no such choice
+     */
+    @NonNull
+    public Optional<FinishReason> getFinishReason(int choice) {
+        Objects.checkIndex(choice, choices.size());
+        return choice < finishReasons.size()
+                ? Optional.ofNullable(finishReasons.get(choice))
+                : Optional.empty();
+    }
+
+    /**
+     * @return whether the {@link #content} was cut off, e.g. at the token limit of the request
+     */
+    public boolean isTruncated() {
+        return isTruncated(0);
+    }
+
+    /**
+     * @param choice the index of the choice
+     * @return whether the choice was cut off, e.g. at the token limit of the request
+     * @throws IndexOutOfBoundsException if there is no such choice
+     */
+    public boolean isTruncated(int choice) {
+        return getFinishReason(choice).map(FinishReason::isTruncated).orElse(false);
+    }
+
+    /**
+     * Extracts a single choice, keeping its finish reason.
+     *
+     * @param choice the index of the choice
+     * @return a response consisting of the choice only
+     * @throws IndexOutOfBoundsException if there is no such choice
+     */
+    @NonNull
+    public ModelResponse selectChoice(int choice) {
+        Objects.checkIndex(choice, choices.size());
+        List<FinishReason> reason = new ArrayList<>(1);
+        reason.add(getFinishReason(choice).orElse(null));
+        return new ModelResponse(List.of(choices.get(choice)), null, reason);
+    }
+}
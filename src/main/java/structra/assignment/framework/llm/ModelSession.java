@@ -0,0 +1,175 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.context.ChatMessage;
+import structra.assignment.framework.llm.context.LLMRole;
+import structra.assignment.framework.llm.history.ChatHistory;
+import structra.assignment.framework.llm.history.HistoryPolicy;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * A conversation with a {@link MachineLearningModel}. Every session has its own system context
+ * and history, so a single model instance can serve any number of independent conversations,
+ * e.g. one per user, concurrently.
+ *
+ * <p>This class is thread-safe. Prompts and their responses are appended to the history once the
+ * response is complete; concurrent requests of the same session do not see each other. Cancelling
+ * the future of a request cancels the request of the model, and nothing is appended.
+ *
+ * @see MachineLearningModel#openSession(String)
+ */
+public class ModelSession {
+
+    private final MachineLearningModel model;
+    private final ChatHistory history;
+
+    private volatile String systemContext;
+
+    /**
+     * Creates a new session. Usually sessions are obtained via {@link
+     * MachineLearningModel#openSession(String)}.
+     *
+     * @param model The model serving the requests of this session.
+     * @param systemContext The initial system context.
+     * @param policy The policy bounding the history of this session.
+     */
+    public ModelSession(
+            @NonNull MachineLearningModel model,
+            @NonNull String systemContext,
+            @NonNull HistoryPolicy policy) {
+        this.model = Objects.requireNonNull(model, "model cannot be null");
+        this.systemContext = Objects.requireNonNull(systemContext, "systemContext cannot be null");
+        this.history = new ChatHistory(policy);
+    }
+
+    /**
+     * Sets the system context used by all following requests which do not specify their own.
+     *
+     * @param systemContext The context or configuration to apply.
+     */
+    public void setContext(@NonNull String systemContext) {
+        this.systemContext = Objects.requireNonNull(systemContext);
+    }
+
+    @NonNull
+    public String getContext() {
+        return systemContext;
+    }
+
+    @NonNull
+    public ChatHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Generates a response to the given prompt using the current system context.
+     *
+     * @param prompt The prompt for the model.
+     * @return A {@link CompletableFuture} containing the response.
+     */
+    public CompletableFuture<String> execute(@NonNull String prompt) {
+        return execute(systemContext, prompt);
+    }
+
+    /**
+     * Generates a response to the given prompt using the given system context for this request
+     * only.
+     *
+     * @param systemContext The system context of this request.
+     * @param prompt The prompt for the model.
+     * @return A {@link CompletableFuture} containing the response.
+     */
+    public CompletableFuture<String> execute(
+            @NonNull String systemContext, @NonNull String prompt) {
+        CompletableFuture<ModelResponse> generation =
+                execute(ModelRequest.builder(prompt).systemContext(systemContext).build());
+        return Cancellation.propagate(generation.thenApply(ModelResponse::getContent), generation);
+    }
+
+    /**
+     * Generates a response to the given prompt using the current system context and streams it.
+     *
+     * @param prompt The prompt for the model.
+     * @param onChunk Receives the parts of the response in order.
+     * @return A {@link CompletableFuture} containing the complete response.
+     * @see MachineLearningModel#stream(String, Consumer)
+     */
+    public CompletableFuture<String> stream(
+            @NonNull String prompt, @NonNull Consumer<String> onChunk) {
+        ModelRequest request = ModelRequest.builder(prompt).systemContext(systemContext).build();
+        CompletableFuture<ModelResponse> generation = stream(request, onChunk);
+        return Cancellation.propagate(generation.thenApply(ModelResponse::getContent), generation);
+    }
+
+    /**
+     * Sends the given request together with the history of this session.
+     *
+     * @param request The request; its history is replaced by the history of this session.
+     * @return A {@link CompletableFuture} containing the response.
+     */
+    public CompletableFuture<ModelResponse> execute(@NonNull ModelRequest request) {
+        ModelRequest withHistory = request.toBuilder().history(history.getMessages()).build();
+        CompletableFuture<ModelResponse> generation = model.execute(withHistory);
+        return Cancellation.propagate(
+                generation.thenApply(response -> record(request, response)), generation);
+    }
+
+    /**
+     * Sends the given request together with the history of this session and streams the
+     * response.
+     *
+     * @param request The request; its history is replaced by the history of this session.
+     * @param onChunk Receives the parts of the response in order.
+     * @return A {@link CompletableFuture} containing the complete response.
+     * @see MachineLearningModel#stream(ModelRequest, Consumer)
+     */
+    public CompletableFuture<ModelResponse> stream(
+            @NonNull ModelRequest request, @NonNull Consumer<String> onChunk) {
+        ModelRequest withHistory = request.toBuilder().history(history.getMessages()).build();
+        CompletableFuture<ModelResponse> generation = model.stream(withHistory, onChunk);
+        return Cancellation.propagate(
+                generation.thenApply(response -> record(request, response)), generation);
+    }
+
+    /**
+     * Appends the prompt and the response to the history. Every choice of the response is
+     * appended, so the model knows all of them in the following requests.
+     */
+    private ModelResponse record(ModelRequest request, ModelResponse response) {
+        ChatMessage[] messages = new ChatMessage[response.getChoices().size() + 1];
+        messages[0] = request.getPromptMessage();
+        for (int i = 0; i < response.getChoices().size(); i++) {
+            messages[i + 1] = new ChatMessage(LLMRole.ASSISTANT, response.getChoices().get(i));
+        }
+        history.append(messages);
+        return response;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm;
+
+import com.google.gson.JsonObject;
+import lombok.Data;
+import lombok.NonNull;
+
+import java.util.Objects;
+
+/**
+ * A JSON schema the response of a model has to adhere to. Models supporting structured output
+ * constrain their generation to the schema, so the response always parses; other models ignore
+ * it.
+ *
+ * <p>The schema has to meet the requirements of strict structured output: every property of an
+ * object is required and no additional properties are allowed.
+ *
+ * @see ModelRequest#getResponseFormat()
+ */
+@Data
+public class ResponseFormat {
+
+    /** The name of the schema, e.g. the kind of the generated object. */
+    private final String name;
+
+    /** The schema in its JSON encoding. */
+    private final String schema;
+
+    /**
+     * @param name the name of the schema, consisting of letters, digits, underscores and dashes
+     * @param schema the schema in its JSON encoding
+     */
+    public ResponseFormat(@NonNull String name, @NonNull String schema) {
+        this.name = Objects.requireNonNull(name, "name cannot be null");
+        this.schema = Objects.requireNonNull(schema, "schema cannot be null");
+        if (!name.matches("[A-Za-z0-9_-]{1,64}")) {
+            throw new IllegalArgumentException("name must consist of letters, digits, _ and -");
+        }
+    }
+
+    /**
+     * Creates a format from a schema.
+     *
+     * @param name the name of the schema, consisting of letters, digits, underscores and dashes
+     * @param schema the schema
+     * @return the new format
+     */
+    @NonNull
+    public static ResponseFormat jsonSchema(@NonNull String name, @NonNull JsonObject schema) {
+        return new ResponseFormat(name, schema.toString());
+    }
+
+    /**
+     * Encodes the format as the {@code response_format} parameter of a chat completion request.
+     *
+     * @return the JSON encoding of the parameter
+     */
+    @NonNull
+    public String toJson() {
+        JsonObject jsonSchema = new JsonObject();
+        jsonSchema.addProperty("name", name);
+        jsonSchema.addProperty("strict", true);
+
+        // the schema is inserted as is, so that it is not parsed again
+        String prefix = jsonSchema.toString();
+        return "{\"type\":\"json_schema\",\"json_schema\":"
+                + prefix.substring(0, prefix.length() - 1)
+                + ",\"schema\":"
+                + schema
+                + "}}";
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the lookups of a {@link ResponseCache}. All counters are cumulative and cheap to update
+ * from many threads.
+ */
+public class CacheStats {
+
+    final LongAdder memoryHits = new LongAdder();
+    final LongAdder diskHits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+
+    /** @return the number of lookups answered by the in-memory tier */
+    public long getMemoryHits() {
+        return memoryHits.sum();
+    }
+
+    /** @return the number of lookups answered by the disk tier */
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    /** @return the number of lookups answered by any tier */
+    public long getHits() {
+        return getMemoryHits() + getDiskHits();
+    }
+
+    /** @return the number of lookups not answered by any tier */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** @return the number of entries evicted from the in-memory tier to stay within its size */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /** @return the share of lookups answered by any tier, {@code 0} if there was no lookup */
+    public double getHitRatio() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "CacheStats{hitRatio=%.3f, memoryHits=%d, diskHits=%d, misses=%d, evictions=%d}",
+                getHitRatio(), getMemoryHits(), getDiskHits(), getMisses(), getEvictions());
+    }
+}
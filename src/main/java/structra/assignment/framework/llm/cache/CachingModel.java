@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.cache;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.Cancellation;
+import structra.assignment.framework.llm.ForwardingModel;
+import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Decorates a {@link MachineLearningModel} with a {@link ResponseCache}. Requests whose {@link
+ * RequestFingerprint} is cached are answered without calling the model; streamed requests receive
+ * the cached response as a single chunk. Successful responses of the model are cached, unless
+ * they were {@link ModelResponse#isTruncated() truncated}.
+ *
+ * <p>Since seeds are ignored by the fingerprint, users requesting questions for the same target,
+ * language and context questions share the cached questions. Requests for several choices are not
+ * cached, since the cache holds a single response per fingerprint.
+ */
+public class CachingModel extends ForwardingModel {
+
+    private final ResponseCache cache;
+
+    /**
+     * @param delegate the decorated model
+     * @param cache the cache of the responses of the model
+     */
+    public CachingModel(@NonNull MachineLearningModel delegate, @NonNull ResponseCache cache) {
+        super(delegate);
+        this.cache = Objects.requireNonNull(cache, "cache cannot be null");
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> execute(@NonNull ModelRequest request) {
+        return lookup(request, null);
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> stream(
+            @NonNull ModelRequest request, @NonNull Consumer<String> onChunk) {
+        return lookup(request, onChunk);
+    }
+
+    @NonNull
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @param onChunk receives the streamed chunks, {@code null} if the caller does not stream
+     */
+    private CompletableFuture<ModelResponse> lookup(
+            ModelRequest request, Consumer<String> onChunk) {
+        if (request.getChoices() > 1) {
+            return onChunk == null ? delegate.execute(request) : delegate.stream(request, onChunk);
+        }
+
+        String fingerprint = RequestFingerprint.of(request);
+
+        Optional<String> cached = cache.get(fingerprint);
+        if (cached.isPresent()) {
+            try {
+                if (onChunk != null) {
+                    onChunk.accept(cached.get());
+                }
+                return CompletableFuture.completedFuture(new ModelResponse(cached.get()));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        CompletableFuture<ModelResponse> upstream =
+                onChunk == null ? delegate.execute(request) : delegate.stream(request, onChunk);
+        return Cancellation.propagate(
+                upstream.thenApply(
+                        response -> {
+                            if (!response.isTruncated()) {
+                                cache.put(fingerprint, response.getContent());
+                            }
+                            return response;
+                        }),
+                upstream);
+    }
+}
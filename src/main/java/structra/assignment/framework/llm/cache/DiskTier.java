@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The disk tier of a {@link ResponseCache}: an append-only log in a memory-mapped file, which
+ * survives restarts of the application.
+ *
+ * <p>The file starts with a header holding a magic number and the end of the log, followed by the
+ * records:
+ *
+ * <pre>
+ * [int checksum][int keyLength][int valueLength][long expiresAt][key, UTF-8][value, UTF-8]
+ * </pre>
+ *
+ * where {@code checksum} is the CRC-32 of the rest of the record. The end of the log is only
+ * advanced after a record has been written completely, so a crash of the application never leaves
+ * a partial record behind. The operating system may however write the pages of the file in any
+ * order, so after a crash of the system the end may cover a torn record: the index is rebuilt when
+ * the file is opened, up to the first record failing its checksum, where the log is truncated. A
+ * later record replaces an earlier one with the same key. Once the file is full, the log is cleared
+ * and starts over.
+ */
+final class DiskTier implements Closeable {
+
+    private static final int MAGIC = 0x53434332;
+    private static final int END_OFFSET = Integer.BYTES;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private static final int KEY_LENGTH_OFFSET = Integer.BYTES;
+    private static final int VALUE_LENGTH_OFFSET = 2 * Integer.BYTES;
+    private static final int EXPIRES_AT_OFFSET = 3 * Integer.BYTES;
+    private static final int RECORD_HEADER_SIZE = 3 * Integer.BYTES + Long.BYTES;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    /** Offsets of the records by key. */
+    private final Map<String, Integer> index = new HashMap<>();
+
+    private int end;
+
+    DiskTier(Path file, int capacity) throws IOException {
+        if (capacity <= HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("capacity is too small");
+        }
+
+        this.capacity = capacity;
+        this.channel =
+                FileChannel.open(
+                        file,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        if (buffer.getInt(0) == MAGIC) {
+            load();
+        } else {
+            reset();
+        }
+    }
+
+    synchronized String get(String key, long now) {
+        Integer offset = index.get(key);
+        if (offset == null) {
+            return null;
+        }
+        if (buffer.getLong(offset + EXPIRES_AT_OFFSET) <= now) {
+            index.remove(key);
+            return null;
+        }
+
+        int keyLength = buffer.getInt(offset + KEY_LENGTH_OFFSET);
+        int valueLength = buffer.getInt(offset + VALUE_LENGTH_OFFSET);
+        return read(offset + RECORD_HEADER_SIZE + keyLength, valueLength);
+    }
+
+    synchronized void put(String key, String value, long expiresAt) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        long size = (long) RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length;
+
+        if (size > capacity - HEADER_SIZE) {
+            return;
+        }
+        if (end + size > capacity) {
+            reset();
+        }
+
+        int offset = end;
+        buffer.putInt(offset + KEY_LENGTH_OFFSET, keyBytes.length);
+        buffer.putInt(offset + VALUE_LENGTH_OFFSET, valueBytes.length);
+        buffer.putLong(offset + EXPIRES_AT_OFFSET, expiresAt);
+        buffer.put(offset + RECORD_HEADER_SIZE, keyBytes);
+        buffer.put(offset + RECORD_HEADER_SIZE + keyBytes.length, valueBytes);
+        buffer.putInt(offset, checksum(offset, (int) size));
+
+        end = (int) (offset + size);
+        buffer.putInt(END_OFFSET, end);
+        index.put(key, offset);
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    synchronized void clear() {
+        reset();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Rebuilds the index, dropping the log if its header is corrupt and truncating it at the first
+     * corrupt record.
+     */
+    private void load() {
+        end = buffer.getInt(END_OFFSET);
+        if (end < HEADER_SIZE || end > capacity) {
+            reset();
+            return;
+        }
+
+        int offset = HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE <= end) {
+            int keyLength = buffer.getInt(offset + KEY_LENGTH_OFFSET);
+            int valueLength = buffer.getInt(offset + VALUE_LENGTH_OFFSET);
+            long next = (long) offset + RECORD_HEADER_SIZE + keyLength + valueLength;
+            if (keyLength < 0
+                    || valueLength < 0
+                    || next > end
+                    || buffer.getInt(offset) != checksum(offset, (int) (next - offset))) {
+                break; // corrupt or torn record, keep the intact prefix
+            }
+
+            index.put(read(offset + RECORD_HEADER_SIZE, keyLength), offset);
+            offset = (int) next;
+        }
+        end = offset;
+        buffer.putInt(END_OFFSET, end);
+    }
+
+    private void reset() {
+        index.clear();
+        end = HEADER_SIZE;
+        buffer.putInt(END_OFFSET, end);
+        buffer.putInt(0, MAGIC);
+    }
+
+    /** Computes the checksum of a record, covering everything but the checksum itself. */
+    private int checksum(int offset, int size) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + Integer.BYTES, size - Integer.BYTES));
+        return (int) crc.getValue();
+    }
+
+    private String read(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The in-memory tier of a {@link ResponseCache}, evicting the least recently used entries once the
+ * estimated size of all entries exceeds its limit.
+ */
+final class MemoryTier {
+
+    /** Estimated bytes of the map entry, the entry object and the string headers. */
+    private static final long ENTRY_OVERHEAD = 128;
+
+    private final long maxBytes;
+    private final CacheStats stats;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+
+    MemoryTier(long maxBytes, CacheStats stats) {
+        this.maxBytes = maxBytes;
+        this.stats = stats;
+    }
+
+    synchronized String get(String key, long now) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= now) {
+            remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    synchronized void put(String key, String value, long expiresAt) {
+        long size = sizeOf(key, value);
+        if (size > maxBytes) {
+            return;
+        }
+
+        remove(key);
+        entries.put(key, new Entry(value, expiresAt, size));
+        bytes += size;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().getValue().size;
+            eldest.remove();
+            stats.evictions.increment();
+        }
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.size;
+        }
+    }
+
+    private static long sizeOf(String key, String value) {
+        // strings of non latin text use two bytes per character
+        return ENTRY_OVERHEAD + 2L * (key.length() + value.length());
+    }
+
+    private static final class Entry {
+        private final String value;
+        private final long expiresAt;
+        private final long size;
+
+        private Entry(String value, long expiresAt, long size) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.size = size;
+        }
+    }
+}
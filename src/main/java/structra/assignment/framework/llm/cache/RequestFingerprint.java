@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.cache;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.context.ChatMessage;
+import structra.assignment.framework.llm.context.specification.GenericContext;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Computes the cache keys of {@link ModelRequest}s. The random seeds inserted by {@link
+ * GenericContext} are replaced by a placeholder before hashing, so requests for the same target,
+ * language and context questions map to the same key although no two of their prompts are equal.
+ */
+public final class RequestFingerprint {
+
+    /** Replaces every seed in a normalized text. */
+    public static final String SEED_PLACEHOLDER = "<seed>";
+
+    private RequestFingerprint() {}
+
+    /**
+     * Computes the fingerprint of a request, consisting of its normalized system context, history
+     * and prompt, and the parameters shaping the response: its format, token limit and stop
+     * sequences.
+     *
+     * @param request the request to fingerprint
+     * @return the hex encoded SHA-256 hash of the normalized request
+     */
+    @NonNull
+    public static String of(@NonNull ModelRequest request) {
+        MessageDigest digest = newDigest();
+        update(digest, request.getSystemContext());
+        for (ChatMessage message : request.getHistory()) {
+            update(digest, message.getRole().toString());
+            update(digest, message.getContent());
+        }
+        update(digest, request.getPrompt());
+        request.getResponseFormat().ifPresent(format -> update(digest, format.getSchema()));
+        request.getMaxTokens().ifPresent(maxTokens -> update(digest, "max_tokens=" + maxTokens));
+        for (String sequence : request.getStopSequences()) {
+            update(digest, "stop=" + sequence);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Removes the seeds from the given text.
+     *
+     * @param text the text to normalize
+     * @return the text with every seed replaced by {@link #SEED_PLACEHOLDER}
+     */
+    @NonNull
+    public static String normalize(@NonNull String text) {
+        return GenericContext.SEED_PATTERN.matcher(text).replaceAll(SEED_PLACEHOLDER);
+    }
+
+    /** Hashes a length prefixed text, so that the boundaries between texts are unambiguous. */
+    private static void update(MessageDigest digest, String text) {
+        byte[] bytes = normalize(text).getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, bytes.length));
+        digest.update(bytes);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.cache;
+
+import lombok.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A cache of generated responses, keyed by {@link RequestFingerprint}s.
+ *
+ * <p>Entries are kept in a bounded in-memory tier, which evicts the least recently used entries
+ * once their estimated size exceeds its limit. An optional disk tier in a memory-mapped file keeps
+ * entries across restarts; entries found there are promoted to the in-memory tier. Every entry
+ * expires after the time to live of the cache.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @see CachingModel
+ */
+public class ResponseCache implements Closeable {
+
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofDays(1);
+
+    private final MemoryTier memory;
+    private final DiskTier disk;
+    private final long timeToLive;
+    private final CacheStats stats = new CacheStats();
+
+    private ResponseCache(Builder builder) throws IOException {
+        this.memory = new MemoryTier(builder.maxBytes, stats);
+        this.disk =
+                builder.diskFile == null
+                        ? null
+                        : new DiskTier(builder.diskFile, builder.diskCapacity);
+        this.timeToLive = builder.timeToLive.toMillis();
+    }
+
+    /**
+     * Creates a new cache with the default limits and without a disk tier.
+     *
+     * @return the new cache
+     */
+    @NonNull
+    public static ResponseCache inMemory() {
+        try {
+            return builder().build();
+        } catch (IOException e) {
+            throw new IllegalStateException("A cache without a disk tier does no I/O", e);
+        }
+    }
+
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Looks up the response cached for the given fingerprint.
+     *
+     * @param fingerprint the fingerprint of the request
+     * @return the cached response, if there is one which has not expired
+     */
+    @NonNull
+    public Optional<String> get(@NonNull String fingerprint) {
+        long now = System.currentTimeMillis();
+
+        String value = memory.get(fingerprint, now);
+        if (value != null) {
+            stats.memoryHits.increment();
+            return Optional.of(value);
+        }
+
+        if (disk != null) {
+            value = disk.get(fingerprint, now);
+            if (value != null) {
+                stats.diskHits.increment();
+                memory.put(fingerprint, value, now + timeToLive);
+                return Optional.of(value);
+            }
+        }
+
+        stats.misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Caches the response to the request with the given fingerprint in every tier.
+     *
+     * @param fingerprint the fingerprint of the request
+     * @param response the response to cache
+     */
+    public void put(@NonNull String fingerprint, @NonNull String response) {
+        long expiresAt = System.currentTimeMillis() + timeToLive;
+        memory.put(fingerprint, response, expiresAt);
+        if (disk != null) {
+            disk.put(fingerprint, response, expiresAt);
+        }
+    }
+
+    /** Removes all entries from every tier. */
+    public void clear() {
+        memory.clear();
+        if (disk != null) {
+            disk.clear();
+        }
+    }
+
+    /**
+     * @return the number of entries in the in-memory tier
+     */
+    public int size() {
+        return memory.size();
+    }
+
+    /**
+     * @return the estimated size of the entries in the in-memory tier in bytes
+     */
+    public long getBytes() {
+        return memory.getBytes();
+    }
+
+    @NonNull
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Flushes and closes the disk tier, if there is one.
+     *
+     * @throws IOException If the disk tier cannot be flushed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (disk != null) {
+            disk.close();
+        }
+    }
+
+    /** Builder for {@link ResponseCache}. */
+    public static class Builder {
+
+        private long maxBytes = DEFAULT_MAX_BYTES;
+        private Duration timeToLive = DEFAULT_TIME_TO_LIVE;
+        private Path diskFile;
+        private int diskCapacity;
+
+        private Builder() {}
+
+        /**
+         * Sets the maximum estimated size of the in-memory tier, {@link #DEFAULT_MAX_BYTES} by
+         * default.
+         */
+        public Builder maxBytes(long maxBytes) {
+            if (maxBytes <= 0) {
+                throw new IllegalArgumentException("maxBytes must be positive");
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /** Sets the time after which entries expire, {@link #DEFAULT_TIME_TO_LIVE} by default. */
+        public Builder timeToLive(@NonNull Duration timeToLive) {
+            Objects.requireNonNull(timeToLive, "timeToLive cannot be null");
+            if (timeToLive.isNegative() || timeToLive.isZero()) {
+                throw new IllegalArgumentException("timeToLive must be positive");
+            }
+            this.timeToLive = timeToLive;
+            return this;
+        }
+
+        /**
+         * Adds a disk tier, which keeps entries across restarts. The file is created if it does
+         * not exist and reused otherwise.
+         *
+         * @param file the file backing the tier
+         * @param capacity the size of the file in bytes. Once it is full, the tier is cleared.
+         */
+        public Builder diskTier(@NonNull Path file, int capacity) {
+            this.diskFile = Objects.requireNonNull(file, "file cannot be null");
+            this.diskCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * @return the new cache
+         * @throws IOException If the file of the disk tier cannot be opened.
+         */
+        @NonNull
+        public ResponseCache build() throws IOException {
+            return new ResponseCache(this);
+        }
+    }
+}
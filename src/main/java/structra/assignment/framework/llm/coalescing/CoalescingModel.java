@@ -0,0 +1,432 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.coalescing;
+
+import lombok.Data;
+import lombok.NonNull;
+import structra.assignment.framework.llm.Cancellation;
+import structra.assignment.framework.llm.ForwardingModel;
+import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+import structra.assignment.framework.llm.ResponseFormat;
+import structra.assignment.framework.llm.context.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Decorates a {@link MachineLearningModel} so that identical requests in flight at the same time
+ * are sent to the model only once. Two requests are identical if their system context, history,
+ * prompt and number of choices are equal; the model and its parameters, such as the
+ * temperature, are fixed by the delegate. This removes redundant requests when many users ask for
+ * the same target at the same moment.
+ *
+ * <p>The {@link FanOut} defines whether the callers share one response, or whether the upstream
+ * request asks for several choices and every caller receives a different one.
+ *
+ * <p>Only requests in flight are coalesced, a request arriving after the upstream request
+ * completed is sent again. Callers joining a streamed request first receive the chunks generated
+ * so far and then the remaining chunks as they arrive. Cancelling the future of a single caller
+ * does not cancel the upstream request of the others; once every caller cancelled, the upstream
+ * request is cancelled as well.
+ *
+ * <p>This class is thread-safe. Wrap a model once and share the instance, since requests are only
+ * coalesced within the same instance.
+ */
+public class CoalescingModel extends ForwardingModel {
+
+    /** Defines how the result of a single upstream request is handed to its callers. */
+    public enum FanOut {
+        /** Every caller receives the same response. */
+        SHARE,
+
+        /**
+         * The upstream request asks for several {@link ModelRequest#getChoices() choices}, and
+         * every caller receives a different one. Once all choices are taken, the next caller
+         * starts a new upstream request; choices not taken by any caller are discarded. If the
+         * model returns fewer choices than requested, the callers left without one send their
+         * own request. The upstream request is not streamed; streaming callers receive their
+         * choice as a single chunk.
+         */
+        SPLIT
+    }
+
+    /** The number of choices requested upstream by {@link FanOut#SPLIT} if none is specified. */
+    public static final int DEFAULT_SPLIT_CHOICES = 4;
+
+    private final FanOut fanOut;
+    private final int splitChoices;
+    private final ConcurrentMap<Key, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder upstreamRequests = new LongAdder();
+    private final LongAdder coalescedRequests = new LongAdder();
+
+    /**
+     * Decorates the given model, sharing the response among all identical requests.
+     *
+     * @param delegate the decorated model
+     */
+    public CoalescingModel(@NonNull MachineLearningModel delegate) {
+        this(delegate, FanOut.SHARE);
+    }
+
+    /**
+     * @param delegate the decorated model
+     * @param fanOut how the result of an upstream request is handed to its callers
+     */
+    public CoalescingModel(@NonNull MachineLearningModel delegate, @NonNull FanOut fanOut) {
+        this(delegate, fanOut, DEFAULT_SPLIT_CHOICES);
+    }
+
+    /**
+     * @param delegate the decorated model
+     * @param fanOut how the result of an upstream request is handed to its callers
+     * @param splitChoices the number of choices requested upstream by {@link FanOut#SPLIT}, i.e.
+     *     the maximum number of callers served by one upstream request
+     */
+    public CoalescingModel(
+            @NonNull MachineLearningModel delegate, @NonNull FanOut fanOut, int splitChoices) {
+        super(delegate);
+        if (splitChoices < 1) {
+            throw new IllegalArgumentException("splitChoices must be at least 1");
+        }
+        this.fanOut = Objects.requireNonNull(fanOut, "fanOut cannot be null");
+        this.splitChoices = splitChoices;
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> execute(@NonNull ModelRequest request) {
+        return join(request, null);
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> stream(
+            @NonNull ModelRequest request, @NonNull Consumer<String> onChunk) {
+        return join(request, onChunk);
+    }
+
+    @NonNull
+    public FanOut getFanOut() {
+        return fanOut;
+    }
+
+    /**
+     * @return the number of requests sent to the delegate
+     */
+    public long getUpstreamRequests() {
+        return upstreamRequests.sum();
+    }
+
+    /**
+     * @return the number of requests which joined a request already in flight
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.sum();
+    }
+
+    /**
+     * Joins the identical request in flight or starts a new one.
+     *
+     * @param onChunk receives the streamed chunks, {@code null} if the caller does not stream
+     */
+    private CompletableFuture<ModelResponse> join(ModelRequest request, Consumer<String> onChunk) {
+        if (fanOut == FanOut.SPLIT && request.getChoices() > 1) {
+            // the choices of the caller cannot be split any further
+            upstreamRequests.increment();
+            return onChunk == null ? delegate.execute(request) : delegate.stream(request, onChunk);
+        }
+
+        Key key =
+                new Key(
+                        request.getSystemContext(),
+                        request.getHistory(),
+                        request.getPrompt(),
+                        request.getChoices(),
+                        request.getResponseFormat().orElse(null),
+                        request.getMaxTokens().orElse(0),
+                        request.getStopSequences());
+        InFlight[] created = new InFlight[1];
+        int[] slot = new int[1];
+
+        InFlight flight =
+                inFlight.compute(
+                        key,
+                        (k, existing) -> {
+                            if (existing != null) {
+                                slot[0] = existing.reserve();
+                                if (slot[0] >= 0) {
+                                    return existing;
+                                }
+                            }
+                            created[0] = newFlight(onChunk != null);
+                            slot[0] = created[0].reserve();
+                            return created[0];
+                        });
+
+        Supplier<CompletableFuture<ModelResponse>> resend =
+                () -> {
+                    upstreamRequests.increment();
+                    return onChunk == null
+                            ? delegate.execute(request)
+                            : delegate.stream(request, onChunk);
+                };
+
+        // subscribe before starting, so that no chunk is missed
+        CompletableFuture<ModelResponse> future = flight.subscribe(onChunk, slot[0], resend);
+        if (created[0] == null) {
+            coalescedRequests.increment();
+        } else {
+            upstreamRequests.increment();
+            ModelRequest upstream =
+                    fanOut == FanOut.SPLIT
+                            ? request.toBuilder().choices(splitChoices).build()
+                            : request;
+            start(key, flight, upstream);
+        }
+        return future;
+    }
+
+    private InFlight newFlight(boolean streaming) {
+        return fanOut == FanOut.SPLIT
+                ? new InFlight(false, splitChoices)
+                : new InFlight(streaming, Integer.MAX_VALUE);
+    }
+
+    private void start(Key key, InFlight flight, ModelRequest request) {
+        CompletableFuture<ModelResponse> upstream;
+        try {
+            upstream =
+                    flight.streaming
+                            ? delegate.stream(request, flight::publish)
+                            : delegate.execute(request);
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        flight.upstream = upstream;
+
+        upstream.whenComplete(
+                (response, failure) -> {
+                    // remove first, so that later requests are not answered with this response
+                    inFlight.remove(key, flight);
+                    flight.complete(response, failure);
+                });
+    }
+
+    /** Identifies identical requests. */
+    @Data
+    private static final class Key {
+        private final String systemContext;
+        private final List<ChatMessage> history;
+        private final String prompt;
+        private final int choices;
+        private final ResponseFormat responseFormat;
+        private final int maxTokens;
+        private final List<String> stopSequences;
+    }
+
+    /** An upstream request and the callers waiting for it. */
+    private static final class InFlight {
+
+        private final boolean streaming;
+        private final int slots;
+        private final List<String> chunks = new ArrayList<>();
+        private final List<Subscriber> subscribers = new ArrayList<>();
+
+        private volatile CompletableFuture<ModelResponse> upstream;
+
+        private int reserved;
+        private int active;
+        private boolean abandoned;
+        private boolean done;
+        private ModelResponse response;
+        private Throwable failure;
+
+        /**
+         * @param slots the number of callers which may join the request. If it is limited, every
+         *     caller receives its own choice of the response.
+         */
+        private InFlight(boolean streaming, int slots) {
+            this.streaming = streaming;
+            this.slots = slots;
+        }
+
+        /**
+         * @return the slot of the joining caller, -1 if all slots are taken
+         */
+        synchronized int reserve() {
+            if (abandoned || reserved >= slots) {
+                return -1;
+            }
+            active++;
+            return reserved++;
+        }
+
+        synchronized CompletableFuture<ModelResponse> subscribe(
+                Consumer<String> onChunk,
+                int slot,
+                Supplier<CompletableFuture<ModelResponse>> resend) {
+            Subscriber subscriber =
+                    new Subscriber(onChunk, slots == Integer.MAX_VALUE ? -1 : slot, resend);
+            if (streaming) {
+                chunks.forEach(subscriber::deliver);
+            }
+
+            if (done) {
+                subscriber.complete(response, failure, streaming);
+            } else {
+                subscribers.add(subscriber);
+                subscriber.future.whenComplete(
+                        (result, cause) -> {
+                            if (subscriber.future.isCancelled()) {
+                                cancel(subscriber);
+                            }
+                        });
+            }
+            return subscriber.future;
+        }
+
+        /** Removes a caller which cancelled, cancelling the upstream request if it was the last. */
+        private void cancel(Subscriber subscriber) {
+            synchronized (this) {
+                if (done || !subscribers.remove(subscriber) || --active > 0) {
+                    return;
+                }
+                abandoned = true; // no caller may join anymore
+            }
+
+            CompletableFuture<ModelResponse> request = upstream;
+            if (request != null) {
+                request.cancel(true);
+            }
+        }
+
+        /** Passes a chunk to all subscribers, under the lock so that none is missed or repeated. */
+        synchronized void publish(String chunk) {
+            chunks.add(chunk);
+            subscribers.forEach(subscriber -> subscriber.deliver(chunk));
+        }
+
+        void complete(ModelResponse response, Throwable failure) {
+            List<Subscriber> waiting;
+            synchronized (this) {
+                this.done = true;
+                this.response = response;
+                this.failure = failure;
+                waiting = new ArrayList<>(subscribers);
+                subscribers.clear();
+            }
+
+            // complete outside the lock, since dependent actions may run synchronously
+            waiting.forEach(subscriber -> subscriber.complete(response, failure, streaming));
+        }
+    }
+
+    /** A caller waiting for an upstream request. */
+    private static final class Subscriber {
+
+        private final Consumer<String> onChunk;
+        private final int choice;
+        private final Supplier<CompletableFuture<ModelResponse>> resend;
+        private final CompletableFuture<ModelResponse> future = new CompletableFuture<>();
+
+        /**
+         * @param choice the choice of the response handed to the caller, -1 for the whole
+         *     response
+         * @param resend sends the request of the caller on its own, if the response lacks its
+         *     choice
+         */
+        private Subscriber(
+                Consumer<String> onChunk,
+                int choice,
+                Supplier<CompletableFuture<ModelResponse>> resend) {
+            this.onChunk = onChunk;
+            this.choice = choice;
+            this.resend = resend;
+        }
+
+        /** Passes a chunk to the caller, failing only its own future if the consumer throws. */
+        void deliver(String chunk) {
+            if (onChunk == null || future.isDone()) {
+                return;
+            }
+            try {
+                onChunk.accept(chunk);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * @param streamed whether the chunks of the response have already been delivered
+         */
+        void complete(ModelResponse response, Throwable failure, boolean streamed) {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+                return;
+            }
+            if (choice >= response.getChoices().size()) {
+                // the model returned fewer choices than requested, another caller's choice
+                // would be a duplicate
+                resend();
+                return;
+            }
+            if (choice >= 0) {
+                response = response.selectChoice(choice);
+            }
+            if (!streamed) {
+                deliver(response.getContent()); // the upstream request did not stream
+            }
+            future.complete(response);
+        }
+
+        private void resend() {
+            CompletableFuture<ModelResponse> request;
+            try {
+                request = resend.get();
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            Cancellation.propagate(future, request);
+            request.whenComplete(
+                    (response, failure) -> {
+                        if (failure != null) {
+                            future.completeExceptionally(failure);
+                        } else {
+                            future.complete(response);
+                        }
+                    });
+        }
+    }
+}
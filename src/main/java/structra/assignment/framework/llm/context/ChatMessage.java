@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.context;
+
+import com.google.gson.stream.JsonWriter;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.ToString;
+import structra.assignment.framework.llm.MachineLearningModel;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * A single message of a conversation with a {@link MachineLearningModel}, consisting of the {@link
+ * LLMRole} of its author and its content.
+ *
+ * <p>Messages are immutable. Their JSON encoding is computed once and cached, so messages kept in a
+ * history are not encoded again for every request.
+ *
+ * @see LLMRole
+ */
+@Data
+public class ChatMessage {
+    private final LLMRole role;
+    private final String content;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient byte[] json;
+
+    public ChatMessage(@NonNull LLMRole role, @NonNull String content) {
+        this.role = Objects.requireNonNull(role, "role cannot be null");
+        this.content = Objects.requireNonNull(content, "content cannot be null");
+    }
+
+    /**
+     * Returns the UTF-8 encoded JSON object {@code {"role":"...","content":"..."}} of this message.
+     * The encoding is computed on first use and cached.
+     *
+     * @return the encoded message; the array is shared and must not be modified
+     */
+    @NonNull
+    public byte[] toJson() {
+        byte[] encoded = json;
+        if (encoded == null) {
+            // racy but idempotent, like the hash code of a string
+            encoded = encode();
+            json = encoded;
+        }
+        return encoded;
+    }
+
+    private byte[] encode() {
+        StringWriter writer = new StringWriter(content.length() + 32);
+        try (JsonWriter out = new JsonWriter(writer)) {
+            out.beginObject();
+            out.name("role").value(role.toString());
+            out.name("content").value(content);
+            out.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a string writer does not throw
+        }
+        return writer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
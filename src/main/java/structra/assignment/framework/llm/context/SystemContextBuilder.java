@@ -28,6 +28,7 @@ package structra.assignment.framework.llm.context;
 import lombok.NonNull;
 import structra.assignment.framework.llm.MachineLearningModel;
 import structra.assignment.framework.llm.context.specification.SystemContext;
+import structra.assignment.framework.llm.tokens.TokenEstimator;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -73,4 +74,15 @@ public class SystemContextBuilder {
         }
         return builder.toString();
     }
+
+    /**
+     * Estimates the size of the built context, e.g. to check that it leaves enough room for the
+     * history and the response in the context window of the model.
+     *
+     * @return the estimated number of tokens of {@link #build()}
+     * @see TokenEstimator#DEFAULT
+     */
+    public int estimateTokens() {
+        return TokenEstimator.DEFAULT.count(build());
+    }
 }
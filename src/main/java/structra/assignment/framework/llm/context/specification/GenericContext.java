@@ -27,6 +27,7 @@ package structra.assignment.framework.llm.context.specification;
 
 import java.util.Locale;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 /**
  * Enum for generic context specifications.
@@ -53,6 +54,15 @@ public enum GenericContext implements SystemContext {
     LANGUAGE("Language of your response MUST BE: %s. "),
     RANDOM_SEED("Use this random seed in randomizing your response: %s. ");
 
+    /**
+     * Matches the seeds inserted by {@link #getContext()}, so that contexts differing only in their
+     * seeds can be recognized as equal.
+     */
+    public static final Pattern SEED_PATTERN =
+            Pattern.compile(
+                    "\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}"
+                            + "-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\b");
+
     private final String contextMessage;
 
     GenericContext(String contextMessage) {
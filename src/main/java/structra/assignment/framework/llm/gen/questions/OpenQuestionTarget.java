@@ -25,13 +25,18 @@
 
 package structra.assignment.framework.llm.gen.questions;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import lombok.NonNull;
 import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ResponseFormat;
 import structra.assignment.framework.llm.context.SystemContextBuilder;
 import structra.assignment.framework.llm.context.specification.OpenQuestionContext;
+import structra.assignment.framework.llm.tracing.Span;
+import structra.assignment.framework.llm.tracing.Stage;
+import structra.assignment.framework.llm.tracing.Tracing;
 import structra.assignment.framework.model.StringConstants;
 import structra.assignment.framework.model.answer.AnswerData;
 import structra.assignment.framework.model.answer.concrete.TextAnswer;
@@ -42,6 +47,8 @@ import structra.assignment.framework.model.question.concrete.OpenAnswerQuestion;
 
 import java.util.Collections;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalInt;
 
 /**
  * Used to format a JSON-like String from a {@link MachineLearningModel} response to a native
@@ -52,6 +59,13 @@ import java.util.Objects;
  */
 public class OpenQuestionTarget implements QuestionGenerationTarget<OpenAnswerQuestion> {
 
+    /** The schema of the JSON object parsed by {@link #parse(String)}. */
+    private static final ResponseFormat RESPONSE_FORMAT =
+            ResponseFormat.jsonSchema("open_question", createSchema());
+
+    /** The token budget of a question, about twice the length of a verbose question. */
+    private static final int MAX_TOKENS = 512;
+
     private final String prompt;
 
     /**
@@ -87,16 +101,61 @@ public class OpenQuestionTarget implements QuestionGenerationTarget<OpenAnswerQu
         Objects.requireNonNull(input, "Input string cannot be null");
 
         try {
-            JsonObject object = JsonParser.parseString(input).getAsJsonObject();
-            AnswerData answerData = constructAnswerData(object);
-            QuestionData questionData = parseQuestionData(object, answerData);
-            return (OpenAnswerQuestion) QuizzMaker.createQuestion(questionData);
+            return parseOrThrow(input);
         } catch (Exception e) {
             System.err.println("Error parsing JSON: " + e.getMessage());
             return createErrorQuestion(); // Return error question on parsing failure
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @return the parsed question, or nothing if the input is not a valid question object
+     */
+    @Override
+    public @NonNull Optional<OpenAnswerQuestion> tryParse(@NonNull String input) {
+        Objects.requireNonNull(input, "Input string cannot be null");
+
+        try {
+            return Optional.of(parseOrThrow(input));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return a strict schema of the question object described by {@link
+     *     OpenQuestionContext#FORMAT}
+     */
+    @Override
+    public @NonNull Optional<ResponseFormat> getResponseFormat() {
+        return Optional.of(RESPONSE_FORMAT);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@value #MAX_TOKENS} tokens
+     */
+    @Override
+    public @NonNull OptionalInt getMaxTokens() {
+        return OptionalInt.of(MAX_TOKENS);
+    }
+
+    private OpenAnswerQuestion parseOrThrow(String input) {
+        JsonObject object = JsonParser.parseString(input).getAsJsonObject();
+        AnswerData answerData = constructAnswerData(object);
+        QuestionData questionData = parseQuestionData(object, answerData);
+
+        Span span = Tracing.start(Stage.CONSTRUCTION, getName());
+        OpenAnswerQuestion question = (OpenAnswerQuestion) QuizzMaker.createQuestion(questionData);
+        span.end();
+        return question;
+    }
+
     /**
      * Parses the answer data from a JSON object.
      *
@@ -165,6 +224,50 @@ public class OpenQuestionTarget implements QuestionGenerationTarget<OpenAnswerQu
         return (OpenAnswerQuestion) QuizzMaker.createQuestion(errorQuestion);
     }
 
+    /**
+     * Creates the schema of a question object, holding the question and its answer. Every property
+     * is required and no other properties are allowed, as strict structured output demands.
+     */
+    private static JsonObject createSchema() {
+        JsonObject question =
+                objectSchema(
+                        StringConstants.Questions.QUESTION_TEXT, "string",
+                        StringConstants.Questions.QUESTION_DIFFICULTY, "number",
+                        StringConstants.Overall.POINTS_POSSIBLE, "integer",
+                        StringConstants.Questions.QUESTION_EXPLANATION, "string");
+        JsonObject answer =
+                objectSchema(
+                        StringConstants.Answers.ANSWER_TEXT, "string",
+                        StringConstants.Answers.EXPECTED_ANSWER, "string");
+
+        JsonObject schema = objectSchema();
+        JsonObject properties = schema.getAsJsonObject("properties");
+        properties.add(StringConstants.Questions.QUESTIONS_NAME, question);
+        properties.add(StringConstants.Answers.ANSWERS_NAME, answer);
+        schema.getAsJsonArray("required").add(StringConstants.Questions.QUESTIONS_NAME);
+        schema.getAsJsonArray("required").add(StringConstants.Answers.ANSWERS_NAME);
+        return schema;
+    }
+
+    /** Creates the schema of an object with the given pairs of property names and types. */
+    private static JsonObject objectSchema(String... namesAndTypes) {
+        JsonObject properties = new JsonObject();
+        JsonArray required = new JsonArray();
+        for (int i = 0; i < namesAndTypes.length; i += 2) {
+            JsonObject property = new JsonObject();
+            property.addProperty("type", namesAndTypes[i + 1]);
+            properties.add(namesAndTypes[i], property);
+            required.add(namesAndTypes[i]);
+        }
+
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", "object");
+        schema.add("properties", properties);
+        schema.add("required", required);
+        schema.addProperty("additionalProperties", false);
+        return schema;
+    }
+
     @Override
     public @NonNull String getTargetContext() {
         return new SystemContextBuilder()
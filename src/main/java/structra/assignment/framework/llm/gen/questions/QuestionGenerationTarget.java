@@ -28,9 +28,15 @@ package structra.assignment.framework.llm.gen.questions;
 
 import lombok.NonNull;
 import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ResponseFormat;
 import structra.assignment.framework.model.question.base.Question;
 import structra.assignment.framework.provide.ModelQuestionProvider;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
 /**
  * Defines a specific question generation configuration and behaviour for the {@link MachineLearningModel}.
  * This class is used if a {@link Question} needs to be constructed from a raw string.
@@ -60,6 +66,65 @@ public interface QuestionGenerationTarget<T extends Question<?>> {
      */
     T parse(String input);
 
+    /**
+     * Parses the question like {@link #parse(String)}, but reports a malformed input instead of
+     * substituting a placeholder question, so that placeholders are never counted as parsed.
+     *
+     * @param input the input string to parse
+     * @return the parsed question, or nothing if the input is malformed
+     */
+    @NonNull
+    Optional<T> tryParse(@NonNull String input);
+
+    /**
+     * Returns the JSON schema of the input of {@link #parse(String)}. Models supporting structured
+     * output are constrained to it, so their responses are parsed without any post-processing.
+     *
+     * @return the format of the responses, or nothing if the target relies on its context only
+     * @implNote returns nothing by default
+     */
+    @NonNull
+    default Optional<ResponseFormat> getResponseFormat() {
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the maximum number of tokens of a generated question. Generation time grows with the
+     * length of the output, so the budget cuts off models that keep talking after the question.
+     *
+     * @return the token budget, or nothing if the limit of the model applies
+     * @implNote returns nothing by default
+     */
+    @NonNull
+    default OptionalInt getMaxTokens() {
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Returns the sequences at which the model stops generating, e.g. the text following a
+     * complete question. A sequence the model stopped at is not part of the input of {@link
+     * #parse(String)}.
+     *
+     * @return at most {@value ModelRequest#MAX_STOP_SEQUENCES} stop sequences
+     * @implNote returns no sequences by default
+     */
+    @NonNull
+    default List<String> getStopSequences() {
+        return List.of();
+    }
+
     @NonNull
     String getTargetContext();
+
+    /**
+     * Returns the name of this target, which {@link ModelRequest#getTag() tags} its requests in
+     * metrics.
+     *
+     * @return the name of the target
+     * @implNote returns the simple name of the class by default
+     */
+    @NonNull
+    default String getName() {
+        return getClass().getSimpleName();
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.history;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.context.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The history of a conversation, bounded by a {@link HistoryPolicy}. The policy is applied on
+ * every change, so neither the requests nor the heap grow beyond what the policy retains.
+ *
+ * <p>This class is thread-safe and lock-free. Every change replaces an immutable snapshot, so
+ * readers never block writers and always see a consistent history.
+ *
+ * @see HistoryPolicy
+ */
+public class ChatHistory {
+
+    private final HistoryPolicy policy;
+
+    private final AtomicReference<List<ChatMessage>> messages = new AtomicReference<>(List.of());
+
+    /**
+     * @param policy the policy deciding which messages are retained
+     */
+    public ChatHistory(@NonNull HistoryPolicy policy) {
+        this.policy = Objects.requireNonNull(policy, "policy cannot be null");
+    }
+
+    /**
+     * Appends the given messages in order and applies the policy afterwards.
+     *
+     * @param appended the messages to append
+     */
+    public void append(@NonNull ChatMessage... appended) {
+        List<ChatMessage> added = List.of(appended);
+        messages.updateAndGet(
+                current -> {
+                    List<ChatMessage> next = new ArrayList<>(current.size() + added.size());
+                    next.addAll(current);
+                    next.addAll(added);
+                    return List.copyOf(policy.retain(next));
+                });
+    }
+
+    /**
+     * Returns the retained messages, oldest message first.
+     *
+     * @return an immutable snapshot of the history
+     */
+    @NonNull
+    public List<ChatMessage> getMessages() {
+        return messages.get();
+    }
+
+    /** Removes all messages. */
+    public void clear() {
+        messages.set(List.of());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.history;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.context.ChatMessage;
+import structra.assignment.framework.llm.context.LLMRole;
+
+import java.util.List;
+
+/**
+ * Decides which messages of a conversation are kept and resent with every request. Without a
+ * limit, the size, latency and cost of every request grow with the length of the conversation.
+ *
+ * <p>Implementations have to be stateless, since one policy may be shared by many histories.
+ *
+ * @see ChatHistory
+ */
+public interface HistoryPolicy {
+
+    /** Keeps every message. */
+    HistoryPolicy UNBOUNDED = history -> history;
+
+    /** The policy used if none is specified. */
+    HistoryPolicy DEFAULT = new TokenBudgetPolicy(2048);
+
+    /**
+     * Selects the messages to retain.
+     *
+     * @param history the complete history, oldest message first. It must not be modified.
+     * @return the retained messages, oldest message first
+     */
+    @NonNull
+    List<ChatMessage> retain(@NonNull List<ChatMessage> history);
+
+    /**
+     * Returns the index of the first message to keep if at least {@code from} messages are
+     * dropped, so that the retained history does not start with an answer to a dropped prompt.
+     *
+     * @param history the complete history
+     * @param from the number of messages which have to be dropped at least
+     * @return the index of the first retained message
+     */
+    static int startOfTurn(@NonNull List<ChatMessage> history, int from) {
+        int start = from;
+        while (start < history.size() && history.get(start).getRole() == LLMRole.ASSISTANT) {
+            start++;
+        }
+        return start;
+    }
+}
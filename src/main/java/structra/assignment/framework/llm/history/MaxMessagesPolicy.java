@@ -0,0 +1,59 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.history;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.context.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Retains the most recent messages up to a fixed number. Whole turns are dropped, so the history
+ * never starts with an answer whose prompt has been dropped.
+ */
+public class MaxMessagesPolicy implements HistoryPolicy {
+
+    private final int maxMessages;
+
+    /**
+     * @param maxMessages the maximum number of retained messages
+     */
+    public MaxMessagesPolicy(int maxMessages) {
+        if (maxMessages < 0) {
+            throw new IllegalArgumentException("maxMessages cannot be negative");
+        }
+        this.maxMessages = maxMessages;
+    }
+
+    @Override
+    public @NonNull List<ChatMessage> retain(@NonNull List<ChatMessage> history) {
+        if (history.size() <= maxMessages) {
+            return history;
+        }
+        int start = HistoryPolicy.startOfTurn(history, history.size() - maxMessages);
+        return history.subList(start, history.size());
+    }
+}
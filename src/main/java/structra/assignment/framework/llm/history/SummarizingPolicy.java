@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.history;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.context.ChatMessage;
+import structra.assignment.framework.llm.context.LLMRole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Retains the messages selected by another policy and collapses the dropped ones into a single,
+ * compact {@link LLMRole#SYSTEM} note at the start of the history. The note keeps a short excerpt
+ * of every dropped answer, which is enough for the model to e.g. avoid repeating a question,
+ * while costing only a fraction of the original messages.
+ *
+ * <p>The note is built locally and does not require an additional request to the model.
+ */
+public class SummarizingPolicy implements HistoryPolicy {
+
+    static final String SUMMARY_PREFIX = "Summary of your earlier answers: ";
+
+    private static final String SEPARATOR = "; ";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /** Keys and punctuation of JSON answers, which carry no information in an excerpt. */
+    private static final Pattern JSON_SYNTAX = Pattern.compile("\"[^\"]*\"\\s*:|[{}\\[\\]\"$]");
+
+    private final HistoryPolicy window;
+    private final int excerptLength;
+    private final int maxSummaryLength;
+
+    /**
+     * @param window the policy selecting the messages which are kept unchanged
+     * @param excerptLength the maximum number of characters kept of every dropped answer
+     * @param maxSummaryLength the maximum number of characters of the note. The oldest excerpts
+     *     are dropped first.
+     */
+    public SummarizingPolicy(
+            @NonNull HistoryPolicy window, int excerptLength, int maxSummaryLength) {
+        if (excerptLength < 1) {
+            throw new IllegalArgumentException("excerptLength must be at least 1");
+        }
+        if (maxSummaryLength < excerptLength) {
+            throw new IllegalArgumentException("maxSummaryLength must be at least excerptLength");
+        }
+        this.window = Objects.requireNonNull(window, "window cannot be null");
+        this.excerptLength = excerptLength;
+        this.maxSummaryLength = maxSummaryLength;
+    }
+
+    @Override
+    public @NonNull List<ChatMessage> retain(@NonNull List<ChatMessage> history) {
+        String summary = "";
+        List<ChatMessage> messages = history;
+
+        if (!history.isEmpty() && isSummary(history.get(0))) {
+            summary = history.get(0).getContent().substring(SUMMARY_PREFIX.length());
+            messages = history.subList(1, history.size());
+        }
+
+        List<ChatMessage> retained = window.retain(messages);
+        int dropped = messages.size() - retained.size();
+        if (dropped == 0) {
+            return history;
+        }
+
+        StringBuilder builder = new StringBuilder(summary);
+        for (ChatMessage message : messages.subList(0, dropped)) {
+            if (message.getRole() != LLMRole.ASSISTANT) {
+                continue; // prompts are repetitive and carry little information
+            }
+            if (builder.length() > 0) {
+                builder.append(SEPARATOR);
+            }
+            builder.append(excerpt(message.getContent()));
+        }
+        trimToLength(builder);
+
+        List<ChatMessage> result = new ArrayList<>(retained.size() + 1);
+        result.add(new ChatMessage(LLMRole.SYSTEM, SUMMARY_PREFIX + builder));
+        result.addAll(retained);
+        return result;
+    }
+
+    private static boolean isSummary(ChatMessage message) {
+        return message.getRole() == LLMRole.SYSTEM
+                && message.getContent().startsWith(SUMMARY_PREFIX);
+    }
+
+    private String excerpt(String content) {
+        String stripped = JSON_SYNTAX.matcher(content).replaceAll("");
+        String compact = WHITESPACE.matcher(stripped).replaceAll(" ").strip();
+        return compact.length() <= excerptLength ? compact : compact.substring(0, excerptLength);
+    }
+
+    /** Drops the oldest excerpts until the summary fits into {@link #maxSummaryLength}. */
+    private void trimToLength(StringBuilder builder) {
+        while (builder.length() > maxSummaryLength) {
+            int next = builder.indexOf(SEPARATOR);
+            if (next < 0) {
+                builder.setLength(maxSummaryLength);
+                return;
+            }
+            builder.delete(0, next + SEPARATOR.length());
+        }
+    }
+}
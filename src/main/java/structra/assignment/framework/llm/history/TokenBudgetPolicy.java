@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.history;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.context.ChatMessage;
+import structra.assignment.framework.llm.tokens.TokenEstimator;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Retains the most recent messages whose estimated size fits into a token budget. Whole turns are
+ * dropped, so the history never starts with an answer whose prompt has been dropped.
+ *
+ * @see TokenEstimator
+ */
+public class TokenBudgetPolicy implements HistoryPolicy {
+
+    private final int maxTokens;
+    private final TokenEstimator estimator;
+
+    /**
+     * Creates a new policy using the {@link TokenEstimator#DEFAULT} estimator.
+     *
+     * @param maxTokens the maximum number of estimated tokens of the retained messages
+     */
+    public TokenBudgetPolicy(int maxTokens) {
+        this(maxTokens, TokenEstimator.DEFAULT);
+    }
+
+    /**
+     * @param maxTokens the maximum number of estimated tokens of the retained messages
+     * @param estimator the estimator used to count the tokens of a message
+     */
+    public TokenBudgetPolicy(int maxTokens, @NonNull TokenEstimator estimator) {
+        if (maxTokens < 0) {
+            throw new IllegalArgumentException("maxTokens cannot be negative");
+        }
+        this.maxTokens = maxTokens;
+        this.estimator = Objects.requireNonNull(estimator, "estimator cannot be null");
+    }
+
+    @Override
+    public @NonNull List<ChatMessage> retain(@NonNull List<ChatMessage> history) {
+        int tokens = 0;
+        int start = history.size();
+
+        while (start > 0) {
+            int next = tokens + estimator.count(history.get(start - 1));
+            if (next > maxTokens) {
+                break;
+            }
+            tokens = next;
+            start--;
+        }
+
+        if (start == 0) {
+            return history;
+        }
+        start = HistoryPolicy.startOfTurn(history, start);
+        return history.subList(start, history.size());
+    }
+}
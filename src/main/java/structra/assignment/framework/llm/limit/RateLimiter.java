@@ -0,0 +1,333 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.limit;
+
+import lombok.NonNull;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the requests sent with an API key to its quotas of requests and estimated tokens per
+ * minute, so the provider does not have to reject them with {@code 429 Too Many Requests}.
+ *
+ * <p>Both quotas are token buckets holding up to one minute of quota and refilling continuously.
+ * Requests exceeding the available quota wait in a single FIFO queue, so no request is overtaken
+ * by later ones. A request whose expected wait exceeds its deadline is rejected right away with a
+ * {@link RateLimitExceededException}.
+ *
+ * <p>Limiters are shared by all models using the same key, see {@link #forKey(String,
+ * RateLimits)}; a shared limiter is released once no model uses it anymore. This class is
+ * thread-safe.
+ */
+public class RateLimiter {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    /** The shared limiters by the hash of their key, released once they are unreachable. */
+    private static final Map<String, SharedLimiter> SHARED = new ConcurrentHashMap<>();
+
+    private static final ReferenceQueue<RateLimiter> RELEASED = new ReferenceQueue<>();
+
+    private final RateLimits limits;
+    private final double requestsPerNano;
+    private final double tokensPerNano;
+
+    private final Queue<Waiter> waiters = new ArrayDeque<>();
+
+    private double availableRequests;
+    private double availableTokens;
+    private long lastRefill;
+
+    private long queuedRequests;
+    private long queuedTokens;
+    private boolean drainScheduled;
+
+    /**
+     * Creates a new limiter, starting with the full quota of one minute.
+     *
+     * @param limits the quotas to enforce
+     */
+    public RateLimiter(@NonNull RateLimits limits) {
+        this.limits = Objects.requireNonNull(limits, "limits cannot be null");
+        this.requestsPerNano = (double) limits.getRequestsPerMinute() / NANOS_PER_MINUTE;
+        this.tokensPerNano = (double) limits.getTokensPerMinute() / NANOS_PER_MINUTE;
+        this.availableRequests = limits.getRequestsPerMinute();
+        this.availableTokens = limits.getTokensPerMinute();
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Returns the limiter shared by all users of the given API key, creating it if no user holds
+     * one anymore.
+     *
+     * @param apiKey the API key; only a hash of it is retained
+     * @param limits the quotas of the key
+     * @return the shared limiter of the key
+     * @throws IllegalArgumentException If the shared limiter of the key enforces other limits.
+     */
+    @NonNull
+    public static RateLimiter forKey(@NonNull String apiKey, @NonNull RateLimits limits) {
+        Objects.requireNonNull(limits, "limits cannot be null");
+        expungeReleased();
+
+        RateLimiter[] limiter = new RateLimiter[1];
+        SHARED.compute(
+                fingerprint(apiKey),
+                (key, existing) -> {
+                    limiter[0] = existing == null ? null : existing.get();
+                    if (limiter[0] != null) {
+                        return existing;
+                    }
+                    limiter[0] = new RateLimiter(limits);
+                    return new SharedLimiter(key, limiter[0]);
+                });
+
+        if (!limiter[0].limits.equals(limits)) {
+            throw new IllegalArgumentException(
+                    "limits conflict with the shared limiter of the key: "
+                            + limiter[0].limits
+                            + " != "
+                            + limits);
+        }
+        return limiter[0];
+    }
+
+    /** Removes the entries of the shared limiters no longer in use. */
+    private static void expungeReleased() {
+        Reference<? extends RateLimiter> released;
+        while ((released = RELEASED.poll()) != null) {
+            SharedLimiter shared = (SharedLimiter) released;
+            SHARED.remove(shared.key, shared);
+        }
+    }
+
+    @NonNull
+    public RateLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * Waits for the quota of a single request using the given number of tokens.
+     *
+     * @param tokens the estimated number of tokens of the request. Requests larger than the
+     *     quota of one minute are treated as using the whole quota.
+     * @param maxWait the maximum time the request may wait
+     * @return a future completing once the request may be sent. It fails with a {@link
+     *     RateLimitExceededException} if the request would wait longer than {@code maxWait}.
+     *     Cancelling it gives up the place of the request in the queue.
+     */
+    @NonNull
+    public CompletableFuture<Void> acquire(int tokens, @NonNull Duration maxWait) {
+        long cost = cost(tokens);
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        Waiter waiter;
+
+        synchronized (this) {
+            refill();
+
+            if (waiters.isEmpty() && availableRequests >= 1 && availableTokens >= cost) {
+                availableRequests -= 1;
+                availableTokens -= cost;
+                permit.complete(null);
+                return permit;
+            }
+
+            long wait = expectedWait(queuedRequests + 1, queuedTokens + cost);
+            if (wait > maxWait.toNanos()) {
+                permit.completeExceptionally(
+                        new RateLimitExceededException(
+                                "Expected wait of "
+                                        + TimeUnit.NANOSECONDS.toMillis(wait)
+                                        + "ms exceeds the deadline of "
+                                        + maxWait.toMillis()
+                                        + "ms"));
+                return permit;
+            }
+
+            waiter = new Waiter(cost, permit);
+            waiters.add(waiter);
+            queuedRequests++;
+            queuedTokens += cost;
+            scheduleDrain();
+        }
+
+        // a cancelled waiter must not count towards the expected wait of later requests
+        permit.whenComplete(
+                (granted, failure) -> {
+                    if (failure != null) {
+                        remove(waiter);
+                    }
+                });
+        return permit;
+    }
+
+    /**
+     * Returns the quota of a granted request that was not sent, e.g. since it was cancelled while
+     * waiting for the permit.
+     *
+     * @param tokens the number of tokens the quota was acquired for
+     */
+    public void release(int tokens) {
+        synchronized (this) {
+            refill();
+            availableRequests = Math.min(limits.getRequestsPerMinute(), availableRequests + 1);
+            availableTokens = Math.min(limits.getTokensPerMinute(), availableTokens + cost(tokens));
+        }
+        drain();
+    }
+
+    /**
+     * @return the number of requests waiting for quota
+     */
+    public synchronized int getQueueLength() {
+        return waiters.size();
+    }
+
+    /** Grants quota to the waiting requests in order, as far as it is available. */
+    private void drain() {
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+
+        synchronized (this) {
+            drainScheduled = false;
+            refill();
+
+            while (!waiters.isEmpty()) {
+                Waiter head = waiters.peek();
+                if (head.permit.isDone()) {
+                    dequeue(); // cancelled by the caller
+                    continue;
+                }
+                if (availableRequests < 1 || availableTokens < head.tokens) {
+                    break;
+                }
+                availableRequests -= 1;
+                availableTokens -= head.tokens;
+                granted.add(dequeue().permit);
+            }
+
+            if (!waiters.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        // complete outside the lock, since dependent actions may run synchronously
+        granted.forEach(permit -> permit.complete(null));
+    }
+
+    private synchronized void remove(Waiter waiter) {
+        if (waiters.remove(waiter)) {
+            queuedRequests--;
+            queuedTokens -= waiter.tokens;
+        }
+    }
+
+    private Waiter dequeue() {
+        Waiter waiter = waiters.remove();
+        queuedRequests--;
+        queuedTokens -= waiter.tokens;
+        return waiter;
+    }
+
+    /** Schedules {@link #drain()} for the time the head of the queue can be granted. */
+    private void scheduleDrain() {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        long delay = Math.max(expectedWait(1, waiters.peek().tokens), 1);
+        CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(this::drain);
+    }
+
+    /** Clamps the tokens of a request to the quota of one minute. */
+    private long cost(int tokens) {
+        return Math.min(Math.max(tokens, 0), limits.getTokensPerMinute());
+    }
+
+    /** Computes the time until the given quota is available, given the current state. */
+    private long expectedWait(long requests, long tokens) {
+        double requestWait = Math.max(0, requests - availableRequests) / requestsPerNano;
+        double tokenWait = Math.max(0, tokens - availableTokens) / tokensPerNano;
+        return (long) Math.ceil(Math.max(requestWait, tokenWait));
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRefill;
+        lastRefill = now;
+        availableRequests =
+                Math.min(
+                        limits.getRequestsPerMinute(),
+                        availableRequests + elapsed * requestsPerNano);
+        availableTokens =
+                Math.min(limits.getTokensPerMinute(), availableTokens + elapsed * tokensPerNano);
+    }
+
+    private static String fingerprint(String apiKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(apiKey.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /** A shared limiter, which does not keep it from being released. */
+    private static final class SharedLimiter extends WeakReference<RateLimiter> {
+        private final String key;
+
+        private SharedLimiter(String key, RateLimiter limiter) {
+            super(limiter, RELEASED);
+            this.key = key;
+        }
+    }
+
+    /** A request waiting for quota. */
+    private static final class Waiter {
+        private final long tokens;
+        private final CompletableFuture<Void> permit;
+
+        private Waiter(long tokens, CompletableFuture<Void> permit) {
+            this.tokens = tokens;
+            this.permit = permit;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies with a bounded relative error, like an HdrHistogram. Latencies are
+ * recorded in microseconds into buckets whose width doubles with every power of two, each split
+ * into {@value #SUB_BUCKETS} sub-buckets, so every percentile is accurate to within 1.6% of its
+ * value. Latencies above {@link #MAX_LATENCY} are recorded as the maximum.
+ *
+ * <p>Recording is lock-free and allocation free, so it can be done on every request. Reading a
+ * percentile scans about two thousand counters, which is meant for reporting only. Readings are
+ * not atomic snapshots: latencies recorded concurrently may or may not be included.
+ */
+public class LatencyHistogram {
+
+    /** The highest latency distinguished by the histogram. */
+    public static final Duration MAX_LATENCY = Duration.ofHours(1);
+
+    /** The number of sub-buckets of the first bucket; later buckets use the upper half only. */
+    private static final int SUB_BUCKETS = 128;
+
+    private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final long MAX_MICROS = MAX_LATENCY.toNanos() / 1000;
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_MICROS) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds, negative values are recorded as zero
+     */
+    public void record(long nanos) {
+        long micros = Math.min(MAX_MICROS, Math.max(0, nanos / 1000));
+        counts.incrementAndGet(indexOf(micros));
+        count.increment();
+        sum.add(micros);
+        max.accumulate(micros);
+    }
+
+    /** @return the number of recorded latencies */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** @return the mean of the recorded latencies, zero if there is none */
+    public Duration getMean() {
+        long count = getCount();
+        return count == 0 ? Duration.ZERO : micros(sum.sum() / count);
+    }
+
+    /** @return the highest recorded latency, zero if there is none */
+    public Duration getMax() {
+        return micros(max.get());
+    }
+
+    /**
+     * Returns the latency which the given share of recorded latencies does not exceed, e.g.
+     * {@code 0.99} for the 99th percentile.
+     *
+     * @param quantile the share of latencies, between {@code 0} and {@code 1}
+     * @return the highest latency of the bucket holding the percentile, zero if there is none
+     * @throws IllegalArgumentException if the quantile is not between 0 and 1
+     */
+    public Duration getPercentile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("quantile must be between 0 and 1");
+        }
+
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return Duration.ZERO;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return micros(Math.min(highestOf(i), max.get()));
+            }
+        }
+        return getMax();
+    }
+
+    /** Returns the bucket of a latency in microseconds. */
+    private static int indexOf(long micros) {
+        int bucket = Math.max(0, 63 - Long.numberOfLeadingZeros(micros) - (SUB_BUCKET_BITS - 1));
+        int subBucket = (int) (micros >>> bucket);
+        return bucket * HALF_SUB_BUCKETS + subBucket;
+    }
+
+    /** Returns the highest latency in microseconds recorded into a bucket. */
+    private static long highestOf(int index) {
+        int bucket = Math.max(0, index / HALF_SUB_BUCKETS - 1);
+        long subBucket = index - (long) bucket * HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+
+    private static Duration micros(long micros) {
+        return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.metrics;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.ForwardingModel;
+import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Decorates a {@link MachineLearningModel} with {@link ModelMetrics}: every request is counted as
+ * in flight until it completes, and is then recorded with its latency and token usage, or with
+ * the cause of its failure. Latencies are recorded per {@link ModelRequest#getTag() tag}.
+ *
+ * <p>Recording costs a few counter increments per request, so the decorator can wrap production
+ * models. To measure what the caller experiences, wrap the outermost model, e.g. a {@code
+ * CachingModel} or {@code ResilientModel}; to measure the API itself, wrap the {@code
+ * ChatGPTModel}.
+ */
+public class MeteredModel extends ForwardingModel {
+
+    private final ModelMetrics metrics;
+
+    /**
+     * Decorates the given model, recording into the metrics of the {@link MetricsRegistry#shared()
+     * shared} registry with the given name.
+     *
+     * @param delegate the decorated model
+     * @param name the name of the model in the registry, e.g. its version
+     */
+    public MeteredModel(@NonNull MachineLearningModel delegate, @NonNull String name) {
+        this(delegate, MetricsRegistry.shared().model(name));
+    }
+
+    /**
+     * @param delegate the decorated model
+     * @param metrics the metrics to record into
+     */
+    public MeteredModel(@NonNull MachineLearningModel delegate, @NonNull ModelMetrics metrics) {
+        super(delegate);
+        this.metrics = Objects.requireNonNull(metrics, "metrics cannot be null");
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> execute(ModelRequest request) {
+        TargetMetrics target = metrics.target(request.getTag());
+        long start = System.nanoTime();
+        metrics.started(target);
+        CompletableFuture<ModelResponse> response;
+        try {
+            response = delegate.execute(request);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        return record(response, target, start);
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> stream(ModelRequest request, Consumer<String> onChunk) {
+        TargetMetrics target = metrics.target(request.getTag());
+        long start = System.nanoTime();
+        metrics.started(target);
+        CompletableFuture<ModelResponse> response;
+        try {
+            response = delegate.stream(request, onChunk);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        return record(response, target, start);
+    }
+
+    @NonNull
+    public ModelMetrics getMetrics() {
+        return metrics;
+    }
+
+    private CompletableFuture<ModelResponse> record(
+            CompletableFuture<ModelResponse> response, TargetMetrics target, long start) {
+        // the callback is registered on the future of the delegate, so cancelling it still works
+        response.whenComplete(
+                (result, failure) -> {
+                    if (failure == null) {
+                        metrics.succeeded(
+                                target, System.nanoTime() - start, result.getUsage().orElse(null));
+                    } else {
+                        metrics.failed(failure);
+                    }
+                });
+        return response;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.metrics;
+
+import lombok.NonNull;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Holds the {@link ModelMetrics} of every model and exposes them as MXBeans of the platform MBean
+ * server, e.g. for JConsole or VisualVM, and as a periodic text {@link #snapshot() snapshot}.
+ *
+ * <p>The MXBeans are named {@value #DOMAIN}{@code :type=Model,name=<model>} and {@value
+ * #DOMAIN}{@code :type=Target,model=<model>,name=<tag>}.
+ */
+public class MetricsRegistry {
+
+    /** The domain of the registered MXBeans. */
+    public static final String DOMAIN = "structra.assignment.framework.llm";
+
+    private final Map<String, ModelMetrics> models = new ConcurrentHashMap<>();
+    private final MBeanServer server;
+
+    /** Creates a registry exposing its metrics via the platform MBean server. */
+    public MetricsRegistry() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * @param server the server to register the MXBeans with, {@code null} to not register them
+     */
+    public MetricsRegistry(MBeanServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Returns the registry of the application, exposing its metrics via the platform MBean server.
+     *
+     * @return the shared registry
+     */
+    @NonNull
+    public static MetricsRegistry shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the metrics of the model with the given name, creating and registering them on
+     * first use.
+     *
+     * @param name the name of the model, e.g. its version
+     * @return the metrics of the model
+     */
+    @NonNull
+    public ModelMetrics model(@NonNull String name) {
+        Objects.requireNonNull(name, "name cannot be null");
+        ModelMetrics model = models.get(name);
+        if (model != null) {
+            return model;
+        }
+
+        boolean[] created = new boolean[1];
+        model =
+                models.computeIfAbsent(
+                        name,
+                        key -> {
+                            created[0] = true;
+                            return new ModelMetrics(
+                                    key,
+                                    target ->
+                                            register(
+                                                    target,
+                                                    "type=Target,model="
+                                                            + quote(key)
+                                                            + ",name="
+                                                            + quote(target.getTag())));
+                        });
+        if (created[0]) {
+            register(model, "type=Model,name=" + quote(name));
+        }
+        return model;
+    }
+
+    /**
+     * Describes the current state of all metrics, one line per model and tag.
+     *
+     * @return the text snapshot
+     */
+    @NonNull
+    public String snapshot() {
+        StringBuilder text = new StringBuilder("Model metrics at ").append(Instant.now());
+        new TreeMap<>(models).values().forEach(model -> text.append('\n').append(model));
+        return text.toString();
+    }
+
+    /**
+     * Passes a {@link #snapshot()} to the sink at a fixed rate, on a daemon thread shared by all
+     * registries, until the returned future is cancelled.
+     *
+     * @param interval the time between two snapshots
+     * @param sink receives the snapshots, e.g. {@code System.out::println} or a logger
+     * @return the future of the reporting, to be cancelled to stop it
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    @NonNull
+    public ScheduledFuture<?> startReporting(
+            @NonNull Duration interval, @NonNull Consumer<String> sink) {
+        Objects.requireNonNull(interval, "interval cannot be null");
+        Objects.requireNonNull(sink, "sink cannot be null");
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+
+        long nanos = interval.toNanos();
+        return ReporterHolder.SCHEDULER.scheduleAtFixedRate(
+                () -> sink.accept(snapshot()), nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void register(Object bean, String properties) {
+        if (server == null) {
+            return;
+        }
+        try {
+            server.registerMBean(bean, new ObjectName(DOMAIN + ":" + properties));
+        } catch (InstanceAlreadyExistsException e) {
+            // another registry exposes a model of the same name, whose metrics are kept
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the metrics " + properties, e);
+        }
+    }
+
+    private static String quote(String value) {
+        return ObjectName.quote(value);
+    }
+
+    /** Lazily creates the shared registry on first use. */
+    private static final class SharedHolder {
+        private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    }
+
+    /** Lazily starts the thread reporting the snapshots on first use. */
+    private static final class ReporterHolder {
+        private static final ScheduledExecutorService SCHEDULER =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "model-metrics-reporter");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+}
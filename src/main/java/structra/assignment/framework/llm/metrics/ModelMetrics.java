@@ -0,0 +1,198 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.metrics;
+
+import lombok.Getter;
+import lombok.NonNull;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.TokenUsage;
+import structra.assignment.framework.llm.transport.ModelHttpException;
+
+import java.net.http.HttpTimeoutException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * The metrics of a model: the requests in flight, the failures by cause and the tokens used, as
+ * reported by the model, as well as the {@link TargetMetrics} of every {@link
+ * ModelRequest#getTag() tag}. Requests are recorded by a {@link MeteredModel}.
+ */
+public class ModelMetrics implements ModelMetricsMXBean {
+
+    /** The name of the model, e.g. its version. */
+    @Getter private final String name;
+
+    private final Map<String, TargetMetrics> targets = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder completionTokens = new LongAdder();
+
+    /** Called with every new target, e.g. to register it as an MBean. */
+    private final Consumer<TargetMetrics> onNewTarget;
+
+    ModelMetrics(@NonNull String name, @NonNull Consumer<TargetMetrics> onNewTarget) {
+        this.name = name;
+        this.onNewTarget = onNewTarget;
+    }
+
+    /**
+     * Returns the metrics of the requests with the given tag, creating them on first use.
+     *
+     * @param tag the tag of the requests
+     * @return the metrics of the tag
+     */
+    @NonNull
+    public TargetMetrics target(@NonNull String tag) {
+        TargetMetrics target = targets.get(tag);
+        if (target != null) {
+            return target;
+        }
+        boolean[] created = new boolean[1];
+        target =
+                targets.computeIfAbsent(
+                        tag,
+                        key -> {
+                            created[0] = true;
+                            return new TargetMetrics(key);
+                        });
+        if (created[0]) {
+            onNewTarget.accept(target);
+        }
+        return target;
+    }
+
+    /** @return the metrics of every tag requested so far */
+    @NonNull
+    public Collection<TargetMetrics> getTargets() {
+        return Collections.unmodifiableCollection(targets.values());
+    }
+
+    /** Records the start of a request. */
+    void started(TargetMetrics target) {
+        inFlight.increment();
+        requests.increment();
+        target.requests.increment();
+    }
+
+    /** Records the successful end of a request. */
+    void succeeded(TargetMetrics target, long nanos, TokenUsage usage) {
+        inFlight.decrement();
+        target.getLatency().record(nanos);
+        if (usage != null) {
+            promptTokens.add(usage.getPromptTokens());
+            completionTokens.add(usage.getCompletionTokens());
+        }
+    }
+
+    /** Records the failure of a request. */
+    void failed(Throwable failure) {
+        inFlight.decrement();
+        failures.computeIfAbsent(causeOf(failure), cause -> new LongAdder()).increment();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @Override
+    public Map<String, Long> getFailuresByCause() {
+        Map<String, Long> counts = new TreeMap<>();
+        failures.forEach((cause, count) -> counts.put(cause, count.sum()));
+        return counts;
+    }
+
+    @Override
+    public long getPromptTokens() {
+        return promptTokens.sum();
+    }
+
+    @Override
+    public long getCompletionTokens() {
+        return completionTokens.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text =
+                new StringBuilder()
+                        .append(name)
+                        .append(": inFlight=")
+                        .append(getInFlight())
+                        .append(" requests=")
+                        .append(getRequests())
+                        .append(" failures=")
+                        .append(getFailuresByCause())
+                        .append(" promptTokens=")
+                        .append(getPromptTokens())
+                        .append(" completionTokens=")
+                        .append(getCompletionTokens());
+        new TreeMap<>(targets).values().forEach(target -> text.append("\n  ").append(target));
+        return text.toString();
+    }
+
+    /**
+     * Classifies a failure: {@code cancelled}, {@code timeout}, {@code http_<status>} for
+     * rejected requests, or the simple name of the exception otherwise.
+     */
+    static String causeOf(Throwable failure) {
+        while ((failure instanceof CompletionException || failure instanceof ExecutionException)
+                && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        if (failure instanceof CancellationException) {
+            return "cancelled";
+        }
+        if (failure instanceof TimeoutException || failure instanceof HttpTimeoutException) {
+            return "timeout";
+        }
+        if (failure instanceof ModelHttpException) {
+            return "http_" + ((ModelHttpException) failure).getStatusCode();
+        }
+        return failure.getClass().getSimpleName();
+    }
+}
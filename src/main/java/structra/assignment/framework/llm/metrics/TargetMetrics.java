@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.metrics;
+
+import lombok.Getter;
+import lombok.NonNull;
+import structra.assignment.framework.llm.ModelRequest;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of the requests of a model sharing a {@link ModelRequest#getTag() tag}, e.g. the
+ * requests for one question target: the latency of successful requests and the outcome of parsing
+ * their responses.
+ */
+public class TargetMetrics implements TargetMetricsMXBean {
+
+    /** The tag of the requests. */
+    @Getter private final String tag;
+
+    /** The latencies of the successful requests. */
+    @Getter private final LatencyHistogram latency = new LatencyHistogram();
+
+    final LongAdder requests = new LongAdder();
+    private final LongAdder parsed = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+    private final LongAdder truncations = new LongAdder();
+
+    TargetMetrics(@NonNull String tag) {
+        this.tag = tag;
+    }
+
+    /** Records that a response was parsed. */
+    public void recordParsed() {
+        parsed.increment();
+    }
+
+    /** Records that a complete response could not be parsed. */
+    public void recordParseFailure() {
+        parseFailures.increment();
+    }
+
+    /** Records that a response could not be parsed since it was truncated. */
+    public void recordTruncation() {
+        truncations.increment();
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getParsed() {
+        return parsed.sum();
+    }
+
+    @Override
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    @Override
+    public long getTruncations() {
+        return truncations.sum();
+    }
+
+    @Override
+    public double getLatencyMeanMillis() {
+        return toMillis(latency.getMean());
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return toMillis(latency.getPercentile(0.5));
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return toMillis(latency.getPercentile(0.99));
+    }
+
+    @Override
+    public double getLatencyP999Millis() {
+        return toMillis(latency.getPercentile(0.999));
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return toMillis(latency.getMax());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s: requests=%d p50=%.1fms p99=%.1fms p999=%.1fms max=%.1fms"
+                        + " parsed=%d parseFailures=%d truncations=%d",
+                tag,
+                getRequests(),
+                getLatencyP50Millis(),
+                getLatencyP99Millis(),
+                getLatencyP999Millis(),
+                getLatencyMaxMillis(),
+                getParsed(),
+                getParseFailures(),
+                getTruncations());
+    }
+
+    static double toMillis(Duration duration) {
+        return duration.toNanos() / 1e6;
+    }
+}
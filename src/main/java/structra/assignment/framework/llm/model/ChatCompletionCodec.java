@@ -0,0 +1,289 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.model;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import structra.assignment.framework.llm.FinishReason;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+import structra.assignment.framework.llm.TokenUsage;
+import structra.assignment.framework.llm.context.ChatMessage;
+import structra.assignment.framework.llm.context.LLMRole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes chat completion requests and decodes their responses in the JSON format of the OpenAI
+ * API, see {@link ChatGPTModel}.
+ *
+ * <p>Requests are gathered from pre-encoded fragments: every {@link ChatMessage} caches its UTF-8
+ * JSON encoding, and the encodings of recent system contexts are cached as well. Building a request
+ * therefore only collects references to these byte arrays, which the HTTP client writes one after
+ * another; messages of the history are never encoded again.
+ *
+ * <p>Responses are read token by token from the body, keeping only the content of every choice
+ * and the token usage and skipping everything else, without building a JSON tree or an
+ * intermediate {@link String} of the body.
+ */
+public final class ChatCompletionCodec {
+
+    /** The maximum number of system context encodings kept. */
+    private static final int MAX_SYSTEM_FRAGMENTS = 256;
+
+    private static final byte[] SEPARATOR = {','};
+
+    private static final Map<String, byte[]> HEADERS = new ConcurrentHashMap<>();
+
+    private static final Map<String, byte[]> SYSTEM_FRAGMENTS =
+            Collections.synchronizedMap(
+                    new LinkedHashMap<>(16, 0.75f, true) {
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                            return size() > MAX_SYSTEM_FRAGMENTS;
+                        }
+                    });
+
+    private ChatCompletionCodec() {}
+
+    /**
+     * Encodes a request as a body publisher, gathering the cached encodings of its messages.
+     *
+     * @param model the model to use
+     * @param temperature the temperature of the generation
+     * @param request the request to encode
+     * @param stream whether the response should be streamed as server-sent events
+     * @return the publisher of the UTF-8 encoded body, with a known content length
+     */
+    @NonNull
+    public static HttpRequest.BodyPublisher encodeRequest(
+            @NonNull String model,
+            double temperature,
+            @NonNull ModelRequest request,
+            boolean stream) {
+        List<byte[]> fragments = new ArrayList<>(2 * request.getHistory().size() + 5);
+        fragments.add(HEADERS.computeIfAbsent(model, ChatCompletionCodec::encodeHeader));
+        fragments.add(encodeSystemContext(request.getSystemContext()));
+        for (ChatMessage message : request.getHistory()) {
+            fragments.add(SEPARATOR);
+            fragments.add(message.toJson());
+        }
+        fragments.add(SEPARATOR);
+        fragments.add(request.getPromptMessage().toJson());
+        fragments.add(encodeTrailer(temperature, request, stream));
+
+        long length = 0;
+        for (byte[] fragment : fragments) {
+            length += fragment.length;
+        }
+        return HttpRequest.BodyPublishers.fromPublisher(
+                HttpRequest.BodyPublishers.ofByteArrays(fragments), length);
+    }
+
+    /**
+     * Reads a complete, not streamed response. Only the content and finish reason of every choice
+     * and the token usage are read; all other values are skipped.
+     *
+     * @param body the JSON body of the response; it is not closed
+     * @return the response with the choices ordered by their index
+     * @throws IOException If the body cannot be read or is malformed.
+     */
+    @NonNull
+    public static ModelResponse decodeResponse(@NonNull InputStream body) throws IOException {
+        return readResponse(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a complete, not streamed response like {@link #decodeResponse(InputStream)}.
+     *
+     * @param body the JSON body of the response; it is not closed
+     * @return the response with the choices ordered by their index
+     * @throws IOException If the body cannot be read or is malformed.
+     */
+    @NonNull
+    public static ModelResponse readResponse(@NonNull Reader body) throws IOException {
+        JsonReader json = new JsonReader(body);
+        List<String> choices = new ArrayList<>();
+        List<FinishReason> finishReasons = new ArrayList<>();
+        TokenUsage usage = null;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "choices" -> readChoices(json, choices, finishReasons);
+                case "usage" -> usage = readUsage(json);
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (choices.isEmpty()) {
+            throw new JsonIOException("The response does not contain any choice");
+        }
+        return new ModelResponse(choices, usage, finishReasons);
+    }
+
+    private static void readChoices(
+            JsonReader json, List<String> choices, List<FinishReason> finishReasons)
+            throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            int index = choices.size();
+            String content = "";
+            FinishReason finishReason = null;
+
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "index" -> index = json.nextInt();
+                    case "message" -> content = readContent(json);
+                    case "finish_reason" -> finishReason = readFinishReason(json);
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+
+            while (choices.size() <= index) {
+                choices.add("");
+                finishReasons.add(null);
+            }
+            choices.set(index, content);
+            finishReasons.set(index, finishReason);
+        }
+        json.endArray();
+    }
+
+    private static FinishReason readFinishReason(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return null;
+        }
+        return FinishReason.of(json.nextString());
+    }
+
+    /** Reads the content of a message, which is {@code null} e.g. for refusals. */
+    private static String readContent(JsonReader json) throws IOException {
+        String content = "";
+
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.nextName().equals("content") && json.peek() != JsonToken.NULL) {
+                content = json.nextString();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return content;
+    }
+
+    private static TokenUsage readUsage(JsonReader json) throws IOException {
+        int promptTokens = 0;
+        int completionTokens = 0;
+        int totalTokens = 0;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "prompt_tokens" -> promptTokens = json.nextInt();
+                case "completion_tokens" -> completionTokens = json.nextInt();
+                case "total_tokens" -> totalTokens = json.nextInt();
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+        return new TokenUsage(promptTokens, completionTokens, totalTokens);
+    }
+
+    /** Encodes the start of a request up to the first message. */
+    private static byte[] encodeHeader(String model) {
+        StringWriter writer = new StringWriter();
+        try {
+            // the document is left incomplete, so the writer is not closed
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name(LLMRole.MODEL.toString()).value(model);
+            json.name("messages").beginArray();
+            json.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a string writer does not throw
+        }
+        return writer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encodeSystemContext(String systemContext) {
+        byte[] fragment = SYSTEM_FRAGMENTS.get(systemContext);
+        if (fragment == null) {
+            fragment = new ChatMessage(LLMRole.SYSTEM, systemContext).toJson();
+            SYSTEM_FRAGMENTS.put(systemContext, fragment);
+        }
+        return fragment;
+    }
+
+    /** Encodes the end of a request after the last message. */
+    private static byte[] encodeTrailer(double temperature, ModelRequest request, boolean stream) {
+        StringBuilder trailer =
+                new StringBuilder("],\"temperature\":")
+                        .append(temperature)
+                        .append(",\"n\":")
+                        .append(request.getChoices())
+                        .append(",\"stream\":")
+                        .append(stream);
+        if (stream) {
+            // without it, streamed responses do not report their usage
+            trailer.append(",\"stream_options\":{\"include_usage\":true}");
+        }
+        request.getMaxTokens()
+                .ifPresent(maxTokens -> trailer.append(",\"max_tokens\":").append(maxTokens));
+        // structured responses have no delimiters, so a stop sequence could only cut off the JSON
+        if (!request.getStopSequences().isEmpty() && request.getResponseFormat().isEmpty()) {
+            JsonArray stop = new JsonArray();
+            request.getStopSequences().forEach(stop::add);
+            trailer.append(",\"stop\":").append(stop);
+        }
+        request.getResponseFormat()
+                .ifPresent(
+                        format -> trailer.append(",\"response_format\":").append(format.toJson()));
+        return trailer.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -28,19 +28,45 @@ package structra.assignment.framework.llm.model;
 import com.google.gson.*;
 import lombok.Getter;
 import lombok.NonNull;
+import structra.assignment.framework.llm.FinishReason;
 import structra.assignment.framework.llm.MachineLearningModel;
 import structra.assignment.framework.llm.KeyProvider;
+import structra.assignment.framework.llm.ModelExecutors;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+import structra.assignment.framework.llm.ModelSession;
+import structra.assignment.framework.llm.ResponseFormat;
+import structra.assignment.framework.llm.TokenUsage;
+import structra.assignment.framework.llm.context.ChatMessage;
 import structra.assignment.framework.llm.context.LLMRole;
+import structra.assignment.framework.llm.history.HistoryPolicy;
+import structra.assignment.framework.llm.limit.RateLimiter;
+import structra.assignment.framework.llm.limit.RateLimits;
+import structra.assignment.framework.llm.routing.Route;
+import structra.assignment.framework.llm.routing.RoutePool;
+import structra.assignment.framework.llm.tokens.TokenEstimator;
+import structra.assignment.framework.llm.tracing.Span;
+import structra.assignment.framework.llm.tracing.Stage;
+import structra.assignment.framework.llm.tracing.Tracing;
+import structra.assignment.framework.llm.transport.HttpTransport;
+import structra.assignment.framework.llm.transport.ModelHttpException;
+import structra.assignment.framework.llm.transport.ReadTimeoutInputStream;
 
-import javax.net.ssl.HttpsURLConnection;
 import java.io.*;
-import java.net.URI;
-import java.net.URL;
-import java.net.URLConnection;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * The {@code ChatGPTModel} class generates natural language responses based on user input. It
@@ -67,21 +93,45 @@ import java.util.concurrent.CompletableFuture;
  * ]
  * }</pre>
  *
+ * <p>Requests are stateless, so one instance can serve any number of concurrent {@link
+ * ModelSession}s. The conversation used by {@link #setContext(String)} and {@link
+ * #execute(String)} is a session shared by all callers of the instance. The history of every
+ * session is bounded by a {@link HistoryPolicy}, see {@link Builder#historyPolicy}.
+ *
+ * <p>Requests are sent via a {@link RoutePool}, which may spread them over several API keys and
+ * endpoints, see {@link #builder(RoutePool)}. Models created from a single {@link KeyProvider} use
+ * a pool of a single route.
+ *
+ * <p>Cancelling the future of a request, or exceeding its deadline, aborts the HTTP exchange and
+ * frees its thread. The deadline is the {@link ModelRequest#getTimeout() timeout} of the request,
+ * or the {@link Builder#requestTimeout(Duration) request timeout} of the model if it has none.
+ * Besides, the read timeout of the {@link HttpTransport} fails requests whose server stops
+ * sending.
+ *
  * @author Lennart Köhler
  * @author Riko Torun
  * @author Moritz Wiedemann
  * @see KeyProvider
  * @see MachineLearningModel
+ * @see HttpTransport
+ * @see HistoryPolicy
+ * @see RoutePool
  */
 public class ChatGPTModel implements MachineLearningModel {
 
-    private static final String ENDPOINT = "https://api.openai.com/v1/chat/completions";
+    /** The maximum time a request without a timeout waits for the quota of a rate limiter. */
+    public static final Duration DEFAULT_MAX_QUEUE_WAIT = Duration.ofSeconds(30);
+
+    /** The deadline of requests without a timeout, from the call until the complete response. */
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofMinutes(2);
 
-    private String systemContext;
     private final ModelVersion modelVersion;
     private final Temperature temperature;
-    private final Collection<JsonObject> chatHistory;
-    private final KeyProvider keyProvider;
+    private final HistoryPolicy historyPolicy;
+    private final RoutePool routes;
+    private final Executor executor;
+    private final Duration requestTimeout;
+    private final ModelSession defaultSession;
 
     /** Initializes a default ChatGPT model instance */
     public ChatGPTModel(KeyProvider keyProvider) {
@@ -98,199 +148,586 @@ public class ChatGPTModel implements MachineLearningModel {
      */
     public ChatGPTModel(
             KeyProvider keyProvider, ModelVersion modelVersion, Temperature temperature) {
+        this(keyProvider, modelVersion, temperature, HttpTransport.shared());
+    }
 
-        if (keyProvider == null) {
+    /**
+     * Creates a new ChatGPT instance with the specified key provider, model version, temperature
+     * and transport. Models sharing a transport share its pooled connections.
+     *
+     * @param keyProvider The key provider for the API
+     * @param modelVersion The version of the model to use
+     * @param temperature The temperature setting for the model.
+     * @param transport The transport used for every request, which also defines the endpoint.
+     */
+    public ChatGPTModel(
+            KeyProvider keyProvider,
+            ModelVersion modelVersion,
+            Temperature temperature,
+            HttpTransport transport) {
+        this(
+                new Builder(keyProvider, null)
+                        .modelVersion(modelVersion)
+                        .temperature(temperature)
+                        .transport(transport)
+                        .executor(ModelExecutors.shared()));
+    }
+
+    private ChatGPTModel(Builder builder) {
+
+        if (builder.keyProvider == null && builder.routes == null) {
             throw new IllegalArgumentException("keyProvider cannot be null");
         }
 
-        if (modelVersion == null) {
+        if (builder.modelVersion == null) {
             throw new IllegalArgumentException("modelVersion cannot be null");
         }
 
-        if (temperature == null) {
+        if (builder.temperature == null) {
             throw new IllegalArgumentException("temperature cannot be null");
         }
 
-        this.keyProvider = keyProvider;
-        this.systemContext = "";
-        this.modelVersion = modelVersion;
-        this.temperature = temperature;
-        this.chatHistory = new ArrayList<>();
+        if (builder.transport == null) {
+            throw new IllegalArgumentException("transport cannot be null");
+        }
+
+        if (builder.historyPolicy == null) {
+            throw new IllegalArgumentException("historyPolicy cannot be null");
+        }
+
+        if (builder.executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+
+        if (builder.requestTimeout == null) {
+            throw new IllegalArgumentException("requestTimeout cannot be null");
+        }
+
+        this.routes =
+                builder.routes != null
+                        ? builder.routes
+                        : RoutePool.of(
+                                Route.builder(builder.keyProvider)
+                                        .transport(builder.transport)
+                                        .rateLimits(builder.rateLimits)
+                                        .build());
+        this.modelVersion = builder.modelVersion;
+        this.temperature = builder.temperature;
+        this.historyPolicy = builder.historyPolicy;
+        this.executor = builder.executor;
+        this.requestTimeout = builder.requestTimeout;
+        this.defaultSession = openSession("");
+    }
+
+    /**
+     * Creates a builder for a ChatGPT instance using the specified key provider. All other settings
+     * are optional.
+     *
+     * @param keyProvider The key provider for the API
+     * @return a new builder
+     */
+    @NonNull
+    public static Builder builder(KeyProvider keyProvider) {
+        return new Builder(keyProvider, null);
+    }
+
+    /**
+     * Creates a builder for a ChatGPT instance sending its requests via the given routes, each
+     * with its own key, endpoint and quotas. All other settings are optional.
+     *
+     * @param routes The routes for the requests
+     * @return a new builder
+     */
+    @NonNull
+    public static Builder builder(@NonNull RoutePool routes) {
+        return new Builder(null, routes);
     }
 
     @Override
     public void setContext(String systemContext) {
-        this.systemContext = systemContext;
+        defaultSession.setContext(systemContext);
     }
 
     /**
-     * Initiates the generation process in a background thread.
+     * Initiates the generation process in a background thread, as part of the conversation shared
+     * by all callers of this instance.
      *
      * @param prompt The input prompt to be sent to the ChatGPT API.
      */
     @Override
     public CompletableFuture<String> execute(String prompt) {
-        CompletableFuture<String> future = new CompletableFuture<>();
-        RequestRunner runner = new RequestRunner(prompt, future);
-        CompletableFuture.runAsync(runner);
+        return defaultSession.execute(prompt);
+    }
+
+    /**
+     * Initiates the generation process in a background thread, requesting the response as a
+     * stream of server-sent events. Every content delta is passed to {@code onChunk} as soon as it
+     * arrives.
+     *
+     * @param prompt The input prompt to be sent to the ChatGPT API.
+     * @param onChunk Receives the content deltas in order, on the request thread.
+     */
+    @Override
+    public CompletableFuture<String> stream(String prompt, @NonNull Consumer<String> onChunk) {
+        return defaultSession.stream(prompt, onChunk);
+    }
+
+    /**
+     * Initiates the generation process in a background thread. If the request asks for several
+     * {@link ModelRequest#getChoices() choices}, all of them are generated by a single API call.
+     * The {@link ModelRequest#getResponseFormat() response format} is only sent to model versions
+     * supporting structured output.
+     *
+     * @param request The request to be sent to the ChatGPT API.
+     */
+    @Override
+    public CompletableFuture<ModelResponse> execute(@NonNull ModelRequest request) {
+        CompletableFuture<ModelResponse> future = new CompletableFuture<>();
+        dispatch(new RequestRunner(request, future, null), future);
+        return future;
+    }
+
+    /**
+     * Initiates the generation process in a background thread, requesting the response as a
+     * stream of server-sent events. Every content delta of the first choice is passed to {@code
+     * onChunk} as soon as it arrives.
+     *
+     * @param request The request to be sent to the ChatGPT API.
+     * @param onChunk Receives the content deltas in order, on the request thread.
+     */
+    @Override
+    public CompletableFuture<ModelResponse> stream(
+            @NonNull ModelRequest request, @NonNull Consumer<String> onChunk) {
+        CompletableFuture<ModelResponse> future = new CompletableFuture<>();
+        dispatch(new RequestRunner(request, future, onChunk), future);
         return future;
     }
 
     /**
-     * This class is necessary in order to avoid sharing ChatGPTModel.resultListener among multiple
-     * threads (otherwise not thread). It performs the actual request execution process.
+     * Picks a route for the given request and runs the request as soon as the rate limiter of the
+     * route, if any, grants the quota for it. The route is released once the future completes,
+     * and the request is aborted if the future fails before it completed, e.g. once it is
+     * cancelled or exceeds its deadline.
+     */
+    private void dispatch(RequestRunner runner, CompletableFuture<ModelResponse> future) {
+        Duration deadline = runner.request.getTimeout().orElse(requestTimeout);
+        future.orTimeout(deadline.toNanos(), TimeUnit.NANOSECONDS);
+        future.whenComplete(
+                (response, failure) -> {
+                    if (failure != null) {
+                        runner.abort();
+                    }
+                });
+
+        Route route = routes.select();
+        runner.route = route;
+        future.whenComplete((response, failure) -> routes.release(route, failure));
+
+        Optional<RateLimiter> limiter;
+        try {
+            limiter = route.getRateLimiter();
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e); // the key provider failed
+            return;
+        }
+        if (limiter.isEmpty()) {
+            submit(runner, future);
+            return;
+        }
+
+        ModelRequest request = runner.request;
+        int tokens = TokenEstimator.DEFAULT.count(request);
+        CompletableFuture<Void> permit =
+                limiter.get()
+                        .acquire(tokens, request.getTimeout().orElse(DEFAULT_MAX_QUEUE_WAIT));
+        // a cancelled or timed out request gives up its place in the queue
+        future.whenComplete((response, failure) -> permit.cancel(false));
+        permit.whenComplete(
+                (granted, failure) -> {
+                    if (failure != null) {
+                        future.completeExceptionally(failure);
+                    } else if (future.isDone()) {
+                        limiter.get().release(tokens);
+                    } else {
+                        submit(runner, future);
+                    }
+                });
+    }
+
+    /**
+     * Runs the given request on the I/O executor of this model, failing the future if the executor
+     * rejects it.
+     */
+    private void submit(RequestRunner runner, CompletableFuture<ModelResponse> future) {
+        try {
+            executor.execute(runner);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the policy set via {@link Builder#historyPolicy(HistoryPolicy)}
+     */
+    @Override
+    public HistoryPolicy getHistoryPolicy() {
+        return historyPolicy;
+    }
+
+    /**
+     * This class is necessary in order to avoid sharing state of a single request among multiple
+     * threads. It performs the actual request execution process.
      */
     private class RequestRunner implements Runnable {
 
-        private final String prompt;
-        private final CompletableFuture<String> future;
+        private static final String EVENT_DATA = "data:";
+        private static final String EVENT_DONE = "[DONE]";
+
+        private final ModelRequest request;
+        private final CompletableFuture<ModelResponse> future;
+        private final Consumer<String> onChunk;
+
+        /** The route picked for the request, set before the runner is submitted. */
+        private volatile Route route;
+
+        /** The thread running the request, {@code null} if it is not running. */
+        private Thread thread;
+
+        /** The body of the response being read, {@code null} until the headers arrived. */
+        private InputStream body;
+
+        /** The time from the dispatch of the request until it is sent. */
+        private final Span queueing;
 
-        private RequestRunner(String prompt, CompletableFuture<String> future) {
-            this.prompt = prompt;
+        /**
+         * @param onChunk Receives the content deltas of a streamed response, {@code null} if the
+         *     response should not be streamed.
+         */
+        private RequestRunner(
+                ModelRequest request,
+                CompletableFuture<ModelResponse> future,
+                Consumer<String> onChunk) {
+            this.request = request;
             this.future = future;
+            this.onChunk = onChunk;
+            this.queueing = Tracing.start(request.getTraceId(), Stage.QUEUEING, request.getTag());
         }
 
         @Override
         public void run() {
-            try {
-                synchronized (chatHistory) {
-                    chatHistory.add(createJSONEntry(LLMRole.USER, prompt));
+            synchronized (this) {
+                if (future.isDone()) {
+                    queueing.end();
+                    return; // cancelled or timed out before it was sent
                 }
+                thread = Thread.currentThread();
+            }
+            queueing.end();
 
-                HttpsURLConnection connection = openConnection();
-                connection.setConnectTimeout(5000);
-
-                String jsonRequestBody = createJsonRequestBody();
-                writeMessageToModel(connection, jsonRequestBody);
-                String response = getModelResponse(connection);
-                System.out.println(response);
-                future.complete(response);
-
-                synchronized (chatHistory) {
-                    chatHistory.add(createJSONEntry(LLMRole.ASSISTANT, response));
+            Span network = Tracing.start(request.getTraceId(), Stage.NETWORK, request.getTag());
+            long bodySize = 0;
+            try {
+                ModelRequest sent = request;
+                if (!modelVersion.structuredOutput && request.getResponseFormat().isPresent()) {
+                    // the format instructions of the prompt have to suffice
+                    sent = request.toBuilder().responseFormat(null).build();
                 }
-            } catch (IOException | JsonIOException e) {
+                HttpRequest.BodyPublisher body =
+                        ChatCompletionCodec.encodeRequest(
+                                modelVersion.version, temperature.value, sent, onChunk != null);
+                bodySize = body.contentLength();
+                HttpResponse<InputStream> httpResponse =
+                        route.getTransport().post(route.getApiKey(), body);
+                ModelResponse response = getModelResponse(httpResponse);
+                network.end(bodySize); // before the callers process the response
+                future.complete(response);
+            } catch (IOException | RuntimeException e) {
+                network.end(bodySize);
+                // also covers malformed responses, which would otherwise never complete the future
                 future.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                    body = null;
+                    Thread.interrupted(); // clears the interrupt of abort(), the thread is reused
+                }
             }
         }
 
         /**
-         * Opens a connection to the AI model server.
-         *
-         * @return The URLConnection object.
-         * @throws IOException If an I/O error occurs.
+         * Aborts the request if it is running: closes the body being read and interrupts the
+         * thread, which cancels the exchange if it still waits for the response headers.
          */
-        @NonNull
-        private HttpsURLConnection openConnection() throws IOException {
-            URL obj = URI.create(ENDPOINT).toURL();
-            HttpsURLConnection connection = (HttpsURLConnection) obj.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Authorization", "Bearer " + keyProvider.getApiKey());
-            connection.setRequestProperty("Content-Type", "application/json");
-            return connection;
+        private synchronized void abort() {
+            if (thread == null) {
+                return;
+            }
+            closeQuietly(body);
+            thread.interrupt();
         }
 
         /**
-         * Writes the formatted message to the model.
-         *
-         * @param connection The URLConnection object.
-         * @param message The formatted message to be sent.
-         * @throws IOException If an I/O error occurs.
+         * Watches the body of the response for stalls, unless the request was aborted while the
+         * headers arrived.
          */
-        private void writeMessageToModel(@NonNull URLConnection connection, String message)
-                throws IOException {
-            connection.setDoOutput(true);
-            OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-            writer.write(message);
-            writer.flush();
-            writer.close();
-        }
+        private synchronized InputStream watch(InputStream stream) throws IOException {
+            if (future.isDone()) {
+                closeQuietly(stream);
+                throw new InterruptedIOException("The request was aborted");
+            }
 
-        /**
-         * This method constructs a JSON object containing:
-         *
-         * <ul>
-         *   <li>The model version to be used
-         *   <li>An array of messages (system context if available, and user prompt)
-         *   <li>The temperature setting for response generation
-         * </ul>
-         *
-         * @return A string representation of the JSON request body.
-         */
-        @NonNull
-        private String createJsonRequestBody() throws JsonIOException, JsonSyntaxException {
-            return new Gson()
-                    .toJson(
-                            Map.of(
-                                    LLMRole.MODEL.toString(),
-                                    modelVersion.version,
-                                    "messages",
-                                    createMessageRequestBody(),
-                                    "temperature",
-                                    temperature.value));
+            Duration readTimeout = route.getTransport().getReadTimeout();
+            body =
+                    new ReadTimeoutInputStream(
+                            stream,
+                            readTimeout,
+                            () ->
+                                    future.completeExceptionally(
+                                            new HttpTimeoutException(
+                                                    "No data received within " + readTimeout)));
+            return body;
         }
 
-        @NonNull
-        private JsonArray createMessageRequestBody() throws JsonIOException {
-            JsonArray message = new JsonArray();
-
-            // add the context
-            message.add(createJSONEntry(LLMRole.SYSTEM, systemContext));
-
-            // put history (including current prompt) in the message body
-            if (!chatHistory.isEmpty()) {
-                synchronized (chatHistory) {
-                    for (JsonObject chatMessage : chatHistory) {
-                        message.add(chatMessage);
-                    }
-                }
+        private void closeQuietly(InputStream stream) {
+            if (stream == null) {
+                return;
+            }
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // the request is aborted anyway
             }
-            return message;
         }
 
         /**
          * Waits for the response from the AI model.
          *
-         * @param connection The URLConnection object.
-         * @return The response from the model as a string.
-         * @throws IOException If an I/O error occurs.
+         * @param httpResponse The response with an unread body.
+         * @return The response with every choice, ordered by index.
+         * @throws IOException If an I/O error occurs or the server rejected the request.
          */
         @NonNull
-        private String getModelResponse(@NonNull URLConnection connection) throws IOException {
-            try {
-                JsonObject firstChoice = getFirstChoice(connection);
-                JsonObject message = firstChoice.getAsJsonObject("message");
-
-                return message.get("content").getAsString();
-            } catch (FileNotFoundException e) {
-                throw new FileNotFoundException("The API endpoint was not found: " + ENDPOINT);
+        private ModelResponse getModelResponse(@NonNull HttpResponse<InputStream> httpResponse)
+                throws IOException {
+            try (InputStream body = watch(httpResponse.body())) {
+                checkStatus(httpResponse);
+                if (onChunk != null) {
+                    return readEventStream(body);
+                }
+                return ChatCompletionCodec.decodeResponse(body);
             } catch (JsonIOException e) {
                 throw new RuntimeException("Error parsing JSON response: " + e.getMessage());
             }
         }
 
-        private JsonObject getFirstChoice(@NonNull URLConnection connection)
+        private void checkStatus(@NonNull HttpResponse<?> httpResponse) throws IOException {
+            int statusCode = httpResponse.statusCode();
+            if (statusCode == 404) {
+                throw new FileNotFoundException(
+                        "The API endpoint was not found: "
+                                + route.getTransport().getEndpoint());
+            }
+            if (statusCode >= 400) {
+                throw ModelHttpException.of(
+                        route.getTransport().getEndpoint(), statusCode, httpResponse.headers());
+            }
+        }
+
+        /**
+         * Reads a stream of server-sent events of the form {@code data: {...}}, terminated by
+         * {@code data: [DONE]}. The content deltas of the first choice are passed to {@link
+         * #onChunk}, the deltas of other choices are only collected. The usage arrives in a final
+         * event without choices.
+         *
+         * @param body The response body.
+         * @return The concatenated content of all events per choice, ordered by index, with the
+         *     finish reasons of the final events and the usage, if reported.
+         * @throws IOException If an I/O error occurs.
+         */
+        @NonNull
+        private ModelResponse readEventStream(@NonNull InputStream body)
                 throws IOException, JsonIOException {
             BufferedReader br =
-                    new BufferedReader(new InputStreamReader(connection.getInputStream()));
+                    new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+            List<StringBuilder> responses = new ArrayList<>();
+            List<FinishReason> finishReasons = new ArrayList<>();
+            TokenUsage usage = null;
             String line;
-            StringBuilder response = new StringBuilder();
 
             while ((line = br.readLine()) != null) {
-                response.append(line);
+                if (!line.startsWith(EVENT_DATA)) {
+                    continue; // blank separators, comments and keep-alive lines
+                }
+
+                String data = line.substring(EVENT_DATA.length()).trim();
+                if (data.equals(EVENT_DONE)) {
+                    break;
+                }
+
+                JsonObject event = JsonParser.parseString(data).getAsJsonObject();
+                JsonElement reported = event.get("usage");
+                if (reported != null && reported.isJsonObject()) {
+                    usage = usageOf(reported.getAsJsonObject());
+                }
+
+                JsonArray choices = event.getAsJsonArray("choices");
+                if (choices == null || choices.isEmpty()) {
+                    continue;
+                }
+
+                for (JsonElement element : choices) {
+                    JsonObject choice = element.getAsJsonObject();
+                    int index = indexOf(choice, 0);
+                    while (responses.size() <= index) {
+                        responses.add(new StringBuilder());
+                        finishReasons.add(null);
+                    }
+
+                    // only the final event of a choice carries its finish reason
+                    JsonElement finishReason = choice.get("finish_reason");
+                    if (finishReason != null && !finishReason.isJsonNull()) {
+                        finishReasons.set(index, FinishReason.of(finishReason.getAsString()));
+                    }
+
+                    JsonObject delta = choice.getAsJsonObject("delta");
+                    if (delta == null
+                            || !delta.has("content")
+                            || delta.get("content").isJsonNull()) {
+                        continue;
+                    }
+
+                    String chunk = delta.get("content").getAsString();
+                    responses.get(index).append(chunk);
+                    if (index == 0) {
+                        onChunk.accept(chunk);
+                    }
+                }
+            }
+
+            List<String> contents = new ArrayList<>();
+            responses.forEach(response -> contents.add(response.toString()));
+            if (contents.isEmpty()) {
+                contents.add("");
             }
-            br.close();
+            return new ModelResponse(contents, usage, finishReasons);
+        }
+
+        private TokenUsage usageOf(JsonObject usage) {
+            return new TokenUsage(
+                    intOf(usage, "prompt_tokens"),
+                    intOf(usage, "completion_tokens"),
+                    intOf(usage, "total_tokens"));
+        }
 
-            JsonObject jsonResponse = JsonParser.parseString(response.toString()).getAsJsonObject();
-            JsonArray choices = jsonResponse.getAsJsonArray("choices");
-            return choices.get(0).getAsJsonObject();
+        private int intOf(JsonObject object, String name) {
+            JsonElement value = object.get(name);
+            return value == null || value.isJsonNull() ? 0 : value.getAsInt();
         }
 
-        private JsonObject createJSONEntry(LLMRole role, String message) throws JsonIOException {
-            JsonObject object = new JsonObject();
-            object.addProperty("role", role.toString());
-            object.addProperty("content", message);
-            return object;
+        /** Returns the index of a choice, or the given fallback if the server omitted it. */
+        private int indexOf(JsonObject choice, int fallback) {
+            JsonElement index = choice.get("index");
+            return index == null || index.isJsonNull() ? fallback : index.getAsInt();
+        }
+    }
+
+    /** A builder for {@link ChatGPTModel} instances. */
+    public static final class Builder {
+
+        private final KeyProvider keyProvider;
+        private final RoutePool routes;
+        private ModelVersion modelVersion = ModelVersion.MODEL_VERSION_3_5_TURBO;
+        private Temperature temperature = Temperature.LOW;
+        private HttpTransport transport;
+        private HistoryPolicy historyPolicy = HistoryPolicy.DEFAULT;
+        private Executor executor;
+        private RateLimits rateLimits;
+        private Duration requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+
+        private Builder(KeyProvider keyProvider, RoutePool routes) {
+            this.keyProvider = keyProvider;
+            this.routes = routes;
+        }
+
+        /** Sets the version of the model to use, {@code gpt-3.5-turbo} by default. */
+        public Builder modelVersion(ModelVersion modelVersion) {
+            this.modelVersion = modelVersion;
+            return this;
+        }
+
+        /** Sets the temperature setting for the model, {@link Temperature#LOW} by default. */
+        public Builder temperature(Temperature temperature) {
+            this.temperature = temperature;
+            return this;
+        }
+
+        /**
+         * Sets the transport used for every request, which also defines the endpoint. Uses the
+         * {@link HttpTransport#shared()} transport by default. Has no effect on a builder created
+         * from a {@link RoutePool}, whose routes define their own transports.
+         */
+        public Builder transport(HttpTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Sets the policy bounding the history of the sessions opened by the model, {@link
+         * HistoryPolicy#DEFAULT} by default.
+         */
+        public Builder historyPolicy(HistoryPolicy historyPolicy) {
+            this.historyPolicy = historyPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the executor running the blocking I/O of the requests. Uses the {@link
+         * ModelExecutors#shared()} executor by default, which runs every request on its own
+         * virtual thread if the runtime supports it.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets the quotas of the API key, which are enforced before a request is sent. The quota
+         * is shared with all other models using the same key. Requests are not limited by
+         * default. Has no effect on a builder created from a {@link RoutePool}, whose routes
+         * define their own quotas.
+         *
+         * @see RateLimiter
+         */
+        public Builder rateLimits(RateLimits rateLimits) {
+            this.rateLimits = rateLimits;
+            return this;
+        }
+
+        /**
+         * Sets the deadline of requests without their own {@link ModelRequest#getTimeout()
+         * timeout}, {@link #DEFAULT_REQUEST_TIMEOUT} by default. Requests exceeding it fail with a
+         * {@link java.util.concurrent.TimeoutException} and are aborted.
+         */
+        public Builder requestTimeout(Duration requestTimeout) {
+            if (requestTimeout != null
+                    && (requestTimeout.isNegative() || requestTimeout.isZero())) {
+                throw new IllegalArgumentException("requestTimeout must be positive");
+            }
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        @NonNull
+        public ChatGPTModel build() {
+            if (transport == null) {
+                transport = HttpTransport.shared();
+            }
+            if (executor == null) {
+                executor = ModelExecutors.shared();
+            }
+            return new ChatGPTModel(this);
         }
     }
 
@@ -312,13 +749,17 @@ public class ChatGPTModel implements MachineLearningModel {
     /** An enum representing the model version to be used for response generation. */
     @Getter
     public enum ModelVersion {
-        MODEL_VERSION_3_5_TURBO("gpt-3.5-turbo"),
-        MODEL_VERSION_4O("gpt-4o");
+        MODEL_VERSION_3_5_TURBO("gpt-3.5-turbo", false),
+        MODEL_VERSION_4O("gpt-4o", true);
 
         private final String version;
 
-        ModelVersion(String version) {
+        /** Whether the model constrains its responses to a {@link ResponseFormat}. */
+        private final boolean structuredOutput;
+
+        ModelVersion(String version, boolean structuredOutput) {
             this.version = version;
+            this.structuredOutput = structuredOutput;
         }
     }
 }
@@ -1,19 +1,16 @@
 package structra.assignment.framework.llm.model;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-
 import structra.assignment.framework.llm.KeyProvider;
 import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
 import structra.assignment.framework.llm.context.specification.SystemContext;
 
-import java.io.FileReader;
-import java.io.IOException;
 import java.nio.file.AccessDeniedException;
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,15 +32,43 @@ public class Mimic implements MachineLearningModel {
 
     private static final double FAILURE_PROBABILITY = 0.1;
 
-    private final Random random = new Random();
+    private static final String[] TYPES = new String[] {NONSENSE, OPEN_ANSWER, MULTIPLE_CHOICE};
+
+    // should match [0-2][0-49], so e.g. [0][45]
+    private static final Pattern INDEX_NOTATION =
+            Pattern.compile("\\[([0-2])]\\[(\\d|[1-4]\\d)]");
+
+    private final QuestionBank bank;
 
     private final KeyProvider keyProvider;
 
+    /**
+     * Creates a model answering from the {@link QuestionBank#shared() shared question bank}.
+     *
+     * @throws java.io.UncheckedIOException If the question bank cannot be loaded.
+     */
     public Mimic(KeyProvider keyProvider) {
+        this(keyProvider, QuestionBank.shared());
+    }
+
+    /**
+     * Creates a model answering from the given bank, which has to contain the categories {@value
+     * #NONSENSE}, {@value #OPEN_ANSWER} and {@value #MULTIPLE_CHOICE}.
+     */
+    public Mimic(KeyProvider keyProvider, QuestionBank bank) {
         if (keyProvider == null) {
             throw new NullPointerException("key provider must not be null");
         }
+        if (bank == null) {
+            throw new NullPointerException("bank must not be null");
+        }
+        for (String type : TYPES) {
+            if (!bank.contains(type)) {
+                throw new IllegalArgumentException("bank must contain the category " + type);
+            }
+        }
         this.keyProvider = keyProvider;
+        this.bank = bank;
     }
 
     /**
@@ -65,7 +90,7 @@ public class Mimic implements MachineLearningModel {
      *         <li>"open_answer" -> always returns an open answer question
      *         <li>"nonsense" -> always returns nonsense json
      *       </ul>
-     *   <li>Cases checked via {@link #contextDependentAction(JsonObject, String)}
+     *   <li>Cases checked via {@link #contextDependentAction(String)}
      *       <ul>
      *         <li>Case: matches pattern [int(0,2)][int(0,49)] -> returns respective element from
      *             the underlying JSON
@@ -76,7 +101,7 @@ public class Mimic implements MachineLearningModel {
      * </ul>
      *
      * @see #loadFromJSON(String)
-     * @see #contextDependentAction(JsonObject, String)
+     * @see #contextDependentAction(String)
      */
     @Override
     public CompletableFuture<String> execute(String prompt) {
@@ -88,7 +113,7 @@ public class Mimic implements MachineLearningModel {
         String res;
 
         try {
-            if (random.nextFloat() < FAILURE_PROBABILITY) {
+            if (ThreadLocalRandom.current().nextFloat() < FAILURE_PROBABILITY) {
                 throw new RuntimeException("Failed to generate question");
             }
             res = loadFromJSON(prompt);
@@ -96,11 +121,29 @@ public class Mimic implements MachineLearningModel {
             return CompletableFuture.failedFuture(exception);
         }
 
-        return CompletableFuture.completedFuture(String.format("$%s$", res));
+        return CompletableFuture.completedFuture(res);
+    }
+
+    /**
+     * {@inheritDoc} Only the prompt and the number of choices of the request are considered, see
+     * {@link #execute(String)}. Every choice is generated independently, so the request fails if
+     * any of them fails.
+     */
+    @Override
+    public CompletableFuture<ModelResponse> execute(ModelRequest request) {
+        List<String> choices = new ArrayList<>();
+        for (int i = 0; i < request.getChoices(); i++) {
+            CompletableFuture<String> choice = execute(request.getPrompt());
+            if (choice.isCompletedExceptionally()) {
+                return choice.thenApply(ModelResponse::new);
+            }
+            choices.add(choice.join());
+        }
+        return CompletableFuture.completedFuture(new ModelResponse(choices));
     }
 
     /**
-     * Loads questions from a json of form
+     * Selects a question of the {@link QuestionBank}, which is loaded from a json of form
      *
      * <blockquote>
      *
@@ -160,7 +203,7 @@ public class Mimic implements MachineLearningModel {
      *             <li>"open_answer" -> always returns an open answer question
      *             <li>"nonsense" -> always returns nonsense json
      *           </ul>
-     *       <li>Cases checked via {@link #contextDependentAction(JsonObject, String)}
+     *       <li>Cases checked via {@link #contextDependentAction(String)}
      *           <ul>
      *             <li>Case: matches pattern [int(0,2)][int(0,49)] -> returns respective element
      *                 from the underlying JSON
@@ -171,56 +214,22 @@ public class Mimic implements MachineLearningModel {
      *     </ul>
      */
     private String loadFromJSON(String prompt) throws RuntimeException {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        JsonObject jsonObject;
-
-        try {
-            FileReader reader = new FileReader("src/main/resources/questions.json");
-            jsonObject = gson.fromJson(reader, JsonObject.class);
-            reader.close();
-        } catch (IOException e) {
-            return "Error loading questions.json";
-        }
-
         return switch (prompt) {
-            case NONSENSE -> {
-                final JsonArray a = jsonObject.get(NONSENSE).getAsJsonArray();
-                yield a.get(random.nextInt(a.size())).toString();
-            }
-            case MULTIPLE_CHOICE -> {
-                final JsonArray a = jsonObject.get(MULTIPLE_CHOICE).getAsJsonArray();
-                yield a.get(random.nextInt(a.size())).toString();
-            }
-            case OPEN_ANSWER -> {
-                final JsonArray a = jsonObject.get(OPEN_ANSWER).getAsJsonArray();
-                yield a.get(random.nextInt(a.size())).toString();
-            }
-            default -> contextDependentAction(jsonObject, prompt);
+            case NONSENSE, MULTIPLE_CHOICE, OPEN_ANSWER -> bank.randomDelimited(prompt);
+            default -> contextDependentAction(prompt);
         };
     }
 
     /**
-     * Checks special cases of working with the JSON depending on the {@link SystemContext}
+     * Checks special cases of working with the question bank depending on the {@link
+     * SystemContext}
      *
-     * @param json A json object of the previously specified form
-     * @return a string representation version of the json object
+     * @return a string representation of the selected json object, wrapped in the delimiter
      * @throws RuntimeException when a null value was provided for the context, or it contained a
      *     malformed value
      */
-    private String contextDependentAction(final JsonObject json, String prompt)
-            throws RuntimeException {
-        final String[] types = new String[] {NONSENSE, OPEN_ANSWER, MULTIPLE_CHOICE};
-
-        // check for malformed json
-        if ((json.get(types[0]) == null)
-                || (json.get(types[1]) == null)
-                || (json.get(types[2]) == null)) {
-            throw new RuntimeException("Failed to generate question");
-        }
-
-        // should match [0-2][0-45], so e.g. [0][45]
-        final Pattern indexNotation = Pattern.compile("\\[([0-2])]\\[(\\d|[1-4]\\d)]");
-        final Matcher matcher = indexNotation.matcher(prompt);
+    private String contextDependentAction(String prompt) throws RuntimeException {
+        final Matcher matcher = INDEX_NOTATION.matcher(prompt);
 
         int type = -1;
         int index = -1;
@@ -230,29 +239,20 @@ public class Mimic implements MachineLearningModel {
             index = Integer.parseInt(matcher.group(2));
         }
 
-        matcher.reset();
-
         // 2 pattern groups should exist in the match (0-1), (0-49)
         if ((type != -1) && (index != -1)) {
 
-            return json.get(types[type]).getAsJsonArray().get(index).toString();
+            return bank.getDelimited(TYPES[type], index);
 
         } else if (prompt.isBlank()) {
-            final float rng = random.nextFloat();
-            final int maxSize = 50;
+            final float rng = ThreadLocalRandom.current().nextFloat();
 
             if (rng < 0.4f) {
-                return json.get(OPEN_ANSWER)
-                        .getAsJsonArray()
-                        .get(random.nextInt(maxSize))
-                        .toString();
+                return bank.randomDelimited(OPEN_ANSWER);
             } else if (rng < 0.8f) {
-                return json.get(MULTIPLE_CHOICE)
-                        .getAsJsonArray()
-                        .get(random.nextInt(maxSize))
-                        .toString();
+                return bank.randomDelimited(MULTIPLE_CHOICE);
             } else {
-                return json.get(NONSENSE).getAsJsonArray().get(random.nextInt(maxSize)).toString();
+                return bank.randomDelimited(NONSENSE);
             }
         } else {
             throw new RuntimeException("Failed to generate question");
@@ -0,0 +1,270 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.model;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import lombok.NonNull;
+import structra.assignment.framework.llm.MachineLearningModel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The pre-defined answers of {@link Mimic}, held in memory. The bank is parsed once and split
+ * into its categories, each entry already serialized to its compact JSON encoding, so looking up
+ * an answer neither reads nor parses the underlying JSON. Every entry is also kept wrapped in the
+ * {@link MachineLearningModel#DEFAULT_DELIMITER delimiter}, as {@link Mimic} returns it.
+ *
+ * <p>Instances are immutable and safe to share between threads.
+ *
+ * @see Mimic
+ */
+public final class QuestionBank {
+
+    /** The classpath resource holding the answers of the shared bank. */
+    public static final String RESOURCE = "/questions.json";
+
+    private static final Object SHARED_LOCK = new Object();
+    private static volatile QuestionBank shared;
+
+    private final Map<String, List<String>> categories;
+    private final Map<String, List<String>> delimited;
+
+    private QuestionBank(Map<String, List<String>> categories) {
+        this.categories = categories;
+        Map<String, List<String>> delimited = new LinkedHashMap<>();
+        categories.forEach(
+                (category, answers) -> {
+                    List<String> wrapped = new ArrayList<>(answers.size());
+                    answers.forEach(
+                            answer ->
+                                    wrapped.add(
+                                            MachineLearningModel.DEFAULT_DELIMITER
+                                                    + answer
+                                                    + MachineLearningModel.DEFAULT_DELIMITER));
+                    delimited.put(category, List.copyOf(wrapped));
+                });
+        this.delimited = Collections.unmodifiableMap(delimited);
+    }
+
+    /**
+     * Returns the bank of {@value #RESOURCE}, loading it on first use. If loading fails, the next
+     * call tries again.
+     *
+     * @return the shared bank
+     * @throws UncheckedIOException If the resource cannot be loaded.
+     */
+    @NonNull
+    public static QuestionBank shared() {
+        QuestionBank bank = shared;
+        if (bank == null) {
+            synchronized (SHARED_LOCK) {
+                bank = shared;
+                if (bank == null) {
+                    bank = loadShared();
+                    shared = bank;
+                }
+            }
+        }
+        return bank;
+    }
+
+    /**
+     * Loads a bank from a JSON object mapping every category to an array of answers. The stream
+     * is not closed.
+     *
+     * @param json the JSON encoding of the bank
+     * @return the loaded bank
+     * @throws IOException If the stream cannot be read or does not contain a valid bank.
+     */
+    @NonNull
+    public static QuestionBank load(@NonNull InputStream json) throws IOException {
+        Objects.requireNonNull(json, "json cannot be null");
+        Reader reader = new InputStreamReader(json, StandardCharsets.UTF_8);
+
+        JsonObject root;
+        try {
+            root = JsonParser.parseReader(reader).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Malformed question bank", e);
+        }
+
+        Map<String, List<String>> categories = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> category : root.entrySet()) {
+            if (!category.getValue().isJsonArray()) {
+                throw new IOException("Category is not an array: " + category.getKey());
+            }
+            List<String> answers = new ArrayList<>();
+            category.getValue().getAsJsonArray().forEach(answer -> answers.add(answer.toString()));
+            if (answers.isEmpty()) {
+                throw new IOException("Category is empty: " + category.getKey());
+            }
+            categories.put(category.getKey(), answers);
+        }
+        return of(categories);
+    }
+
+    /**
+     * Creates a bank from answers that are already serialized, e.g. generated ones.
+     *
+     * @param categories the answers of every category in their JSON encoding
+     * @return the new bank
+     * @throws IllegalArgumentException If a category is empty.
+     */
+    @NonNull
+    public static QuestionBank of(@NonNull Map<String, List<String>> categories) {
+        Map<String, List<String>> copy = new LinkedHashMap<>();
+        categories.forEach(
+                (category, answers) -> {
+                    if (answers.isEmpty()) {
+                        throw new IllegalArgumentException("Category is empty: " + category);
+                    }
+                    copy.put(Objects.requireNonNull(category), List.copyOf(answers));
+                });
+        return new QuestionBank(Collections.unmodifiableMap(copy));
+    }
+
+    /**
+     * @return the names of the categories of the bank
+     */
+    @NonNull
+    public Set<String> getCategories() {
+        return categories.keySet();
+    }
+
+    /**
+     * @param category the name of the category
+     * @return whether the bank contains the category
+     */
+    public boolean contains(String category) {
+        return categories.containsKey(category);
+    }
+
+    /**
+     * Returns the answers of a category in their compact JSON encoding.
+     *
+     * @param category the name of the category
+     * @return the answers, in the order of the underlying JSON
+     * @throws IllegalArgumentException If the bank does not contain the category.
+     */
+    @NonNull
+    public List<String> get(@NonNull String category) {
+        return answers(categories, category);
+    }
+
+    /**
+     * Returns an answer of a category in its compact JSON encoding.
+     *
+     * @param category the name of the category
+     * @param index the position of the answer within the category
+     * @return the answer
+     * @throws IllegalArgumentException If the bank does not contain the category.
+     * @throws IndexOutOfBoundsException If the category has no answer at the index.
+     */
+    @NonNull
+    public String get(@NonNull String category, int index) {
+        return get(category).get(index);
+    }
+
+    /**
+     * Returns a random answer of a category in its compact JSON encoding. The answer is drawn
+     * from the generator of the calling thread, so concurrent callers do not contend.
+     *
+     * @param category the name of the category
+     * @return the answer
+     * @throws IllegalArgumentException If the bank does not contain the category.
+     */
+    @NonNull
+    public String random(@NonNull String category) {
+        return random(get(category));
+    }
+
+    /**
+     * Returns an answer of a category like {@link #get(String, int)}, wrapped in the {@link
+     * MachineLearningModel#DEFAULT_DELIMITER delimiter}.
+     *
+     * @param category the name of the category
+     * @param index the position of the answer within the category
+     * @return the delimited answer
+     * @throws IllegalArgumentException If the bank does not contain the category.
+     * @throws IndexOutOfBoundsException If the category has no answer at the index.
+     */
+    @NonNull
+    public String getDelimited(@NonNull String category, int index) {
+        return answers(delimited, category).get(index);
+    }
+
+    /**
+     * Returns a random answer of a category like {@link #random(String)}, wrapped in the {@link
+     * MachineLearningModel#DEFAULT_DELIMITER delimiter}.
+     *
+     * @param category the name of the category
+     * @return the delimited answer
+     * @throws IllegalArgumentException If the bank does not contain the category.
+     */
+    @NonNull
+    public String randomDelimited(@NonNull String category) {
+        return random(answers(delimited, category));
+    }
+
+    private static List<String> answers(Map<String, List<String>> answers, String category) {
+        List<String> found = answers.get(Objects.requireNonNull(category));
+        if (found == null) {
+            throw new IllegalArgumentException("Unknown category: " + category);
+        }
+        return found;
+    }
+
+    private static String random(List<String> answers) {
+        return answers.get(ThreadLocalRandom.current().nextInt(answers.size()));
+    }
+
+    private static QuestionBank loadShared() {
+        try (InputStream json = QuestionBank.class.getResourceAsStream(RESOURCE)) {
+            if (json == null) {
+                throw new IOException("Resource not found: " + RESOURCE);
+            }
+            return load(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load the question bank", e);
+        }
+    }
+}
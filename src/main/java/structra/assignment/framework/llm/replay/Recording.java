@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.replay;
+
+import lombok.Data;
+import lombok.NonNull;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+import structra.assignment.framework.llm.cache.RequestFingerprint;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A single exchange with a model, as captured by a {@link RecordingModel} and re-served by a
+ * {@link ReplayModel}.
+ */
+@Data
+public class Recording {
+
+    /** The {@link RequestFingerprint} of the request, identifying its context and prompt. */
+    private final String fingerprint;
+
+    /** The {@link ModelRequest#getTag() tag} of the request. */
+    private final String tag;
+
+    /** The prompt of the request. */
+    private final String prompt;
+
+    /** The response of the model, including its token usage and finish reasons. */
+    private final ModelResponse response;
+
+    /** The time between sending the request and receiving the complete response. */
+    private final Duration latency;
+
+    /**
+     * @param fingerprint the fingerprint of the request
+     * @param tag the tag of the request
+     * @param prompt the prompt of the request
+     * @param response the response of the model
+     * @param latency the time until the response was complete
+     */
+    public Recording(
+            @NonNull String fingerprint,
+            @NonNull String tag,
+            @NonNull String prompt,
+            @NonNull ModelResponse response,
+            @NonNull Duration latency) {
+        this.fingerprint = Objects.requireNonNull(fingerprint, "fingerprint cannot be null");
+        this.tag = Objects.requireNonNull(tag, "tag cannot be null");
+        this.prompt = Objects.requireNonNull(prompt, "prompt cannot be null");
+        this.response = Objects.requireNonNull(response, "response cannot be null");
+        this.latency = Objects.requireNonNull(latency, "latency cannot be null");
+        if (latency.isNegative()) {
+            throw new IllegalArgumentException("latency cannot be negative");
+        }
+    }
+
+    /**
+     * Captures an exchange.
+     *
+     * @param request the request sent to the model
+     * @param response the response of the model
+     * @param latency the time until the response was complete
+     * @return the recording of the exchange
+     */
+    @NonNull
+    public static Recording of(
+            @NonNull ModelRequest request,
+            @NonNull ModelResponse response,
+            @NonNull Duration latency) {
+        return new Recording(
+                RequestFingerprint.of(request),
+                request.getTag(),
+                request.getPrompt(),
+                response,
+                latency);
+    }
+}
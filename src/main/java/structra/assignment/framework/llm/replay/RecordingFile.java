@@ -0,0 +1,299 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.replay;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.FinishReason;
+import structra.assignment.framework.llm.ModelResponse;
+import structra.assignment.framework.llm.TokenUsage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An append-only file of {@link Recording}s. The file starts with a magic number, followed by the
+ * length prefixed records:
+ *
+ * <pre>
+ * [int length][long latencyNanos][str fingerprint][str tag][str prompt]
+ *     [int promptTokens][int completionTokens][int totalTokens]
+ *     [int choices]{[str content][byte finishReason]}
+ * </pre>
+ *
+ * where {@code str} is a length prefixed UTF-8 string, {@code promptTokens} is {@code -1} if the
+ * model did not report its usage and {@code finishReason} is the ordinal of the {@link
+ * FinishReason}, {@code -1} if unknown.
+ *
+ * <p>Every record is written and flushed as a whole, so recording can be interrupted at any time:
+ * a record cut off by a crash is ignored when the file is {@link #read(Path) read}, keeping the
+ * intact prefix, and truncated when the file is {@link #append(Path) appended to} again.
+ */
+public final class RecordingFile implements Closeable {
+
+    private static final int MAGIC = 0x53524543;
+    private static final byte UNKNOWN = -1;
+
+    private final DataOutputStream out;
+
+    private RecordingFile(DataOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Opens a file for appending, creating it if it does not exist. A damaged tail, e.g. a record
+     * cut off by a crash, is truncated first, so the new records follow the intact prefix.
+     *
+     * @param file the file to append to
+     * @return the opened file
+     * @throws IOException If the file cannot be opened or is not a recording file.
+     */
+    @NonNull
+    public static RecordingFile append(@NonNull Path file) throws IOException {
+        Objects.requireNonNull(file, "file cannot be null");
+        boolean empty = !Files.exists(file) || Files.size(file) == 0;
+        if (!empty) {
+            long intact;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                intact = scan(in, null);
+            }
+            if (intact < Files.size(file)) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(intact);
+                }
+            }
+        }
+
+        DataOutputStream out =
+                new DataOutputStream(
+                        new BufferedOutputStream(
+                                Files.newOutputStream(
+                                        file,
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.APPEND)));
+        if (empty) {
+            out.writeInt(MAGIC);
+            out.flush();
+        }
+        return new RecordingFile(out);
+    }
+
+    /**
+     * Reads all complete recordings of a file.
+     *
+     * @param file the file to read
+     * @return the recordings, in the order they were appended
+     * @throws IOException If the file cannot be read or is not a recording file.
+     */
+    @NonNull
+    public static List<Recording> read(@NonNull Path file) throws IOException {
+        Objects.requireNonNull(file, "file cannot be null");
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file))) {
+            return read(stream);
+        }
+    }
+
+    /**
+     * Reads all complete recordings of a stream. The stream is not closed.
+     *
+     * @param stream the stream to read, positioned at the start of a recording file
+     * @return the recordings, in the order they were appended
+     * @throws IOException If the stream cannot be read or does not hold a recording file.
+     */
+    @NonNull
+    public static List<Recording> read(@NonNull InputStream stream) throws IOException {
+        List<Recording> recordings = new ArrayList<>();
+        scan(stream, recordings);
+        return recordings;
+    }
+
+    /**
+     * Appends a recording and flushes it to the file. Safe to call from several threads.
+     *
+     * @param recording the recording to append
+     * @throws IOException If the recording cannot be written.
+     */
+    public void write(@NonNull Recording recording) throws IOException {
+        byte[] record = encode(Objects.requireNonNull(recording, "recording cannot be null"));
+        synchronized (out) {
+            out.writeInt(record.length);
+            out.write(record);
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (out) {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the records of a stream up to the first one that is cut off or cannot be decoded.
+     *
+     * @param stream the stream to read, positioned at the start of a recording file
+     * @param recordings the list to add the decoded records to, {@code null} to skip them
+     * @return the length of the intact prefix of the stream, in bytes
+     */
+    private static long scan(InputStream stream, List<Recording> recordings) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a recording file");
+            }
+        } catch (EOFException e) {
+            throw new IOException("Not a recording file", e);
+        }
+
+        long intact = Integer.BYTES;
+        while (true) {
+            byte[] record;
+            try {
+                int length = in.readInt();
+                if (length < 0) {
+                    break; // corrupt record, keep the intact prefix
+                }
+                record = in.readNBytes(length);
+                if (record.length < length) {
+                    break; // cut off record
+                }
+            } catch (EOFException e) {
+                break;
+            }
+
+            Recording recording;
+            try {
+                recording = decode(record);
+            } catch (IOException | RuntimeException e) {
+                break; // corrupt record, keep the intact prefix
+            }
+            if (recordings != null) {
+                recordings.add(recording);
+            }
+            intact += Integer.BYTES + record.length;
+        }
+        return intact;
+    }
+
+    private static byte[] encode(Recording recording) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        ModelResponse response = recording.getResponse();
+
+        out.writeLong(recording.getLatency().toNanos());
+        writeString(out, recording.getFingerprint());
+        writeString(out, recording.getTag());
+        writeString(out, recording.getPrompt());
+
+        TokenUsage usage = response.getUsage().orElse(null);
+        out.writeInt(usage == null ? -1 : usage.getPromptTokens());
+        out.writeInt(usage == null ? 0 : usage.getCompletionTokens());
+        out.writeInt(usage == null ? 0 : usage.getTotalTokens());
+
+        List<String> choices = response.getChoices();
+        out.writeInt(choices.size());
+        for (int i = 0; i < choices.size(); i++) {
+            writeString(out, choices.get(i));
+            out.writeByte(
+                    response.getFinishReason(i)
+                            .map(reason -> (byte) reason.ordinal())
+                            .orElse(UNKNOWN));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Recording decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+
+        long latency = in.readLong();
+        String fingerprint = readString(in);
+        String tag = readString(in);
+        String prompt = readString(in);
+
+        int promptTokens = in.readInt();
+        int completionTokens = in.readInt();
+        int totalTokens = in.readInt();
+        TokenUsage usage =
+                promptTokens < 0
+                        ? null
+                        : new TokenUsage(promptTokens, completionTokens, totalTokens);
+
+        int count = in.readInt();
+        if (count < 0 || count > record.length) {
+            throw new IOException("Corrupt recording");
+        }
+        List<String> choices = new ArrayList<>(count);
+        List<FinishReason> finishReasons = new ArrayList<>(count);
+        FinishReason[] reasons = FinishReason.values();
+        for (int i = 0; i < count; i++) {
+            choices.add(readString(in));
+            byte reason = in.readByte();
+            finishReasons.add(reason >= 0 && reason < reasons.length ? reasons[reason] : null);
+        }
+
+        return new Recording(
+                fingerprint,
+                tag,
+                prompt,
+                new ModelResponse(choices, usage, finishReasons),
+                Duration.ofNanos(latency));
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt recording");
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
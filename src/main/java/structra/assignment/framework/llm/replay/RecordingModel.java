@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.replay;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.ForwardingModel;
+import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Decorates a {@link MachineLearningModel} by appending every successful exchange to a {@link
+ * RecordingFile}, so that it can be re-served by a {@link ReplayModel}. Failed requests are not
+ * recorded.
+ *
+ * <p>To capture the latency of the API itself, wrap the {@code ChatGPTModel} directly rather than
+ * a caching or coalescing decorator, whose hits would be recorded as instant responses.
+ */
+public class RecordingModel extends ForwardingModel {
+
+    private final RecordingFile file;
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param delegate the decorated model
+     * @param file the file to append the exchanges to, closed by the caller
+     */
+    public RecordingModel(@NonNull MachineLearningModel delegate, @NonNull RecordingFile file) {
+        super(delegate);
+        this.file = Objects.requireNonNull(file, "file cannot be null");
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> execute(ModelRequest request) {
+        long start = System.nanoTime();
+        return record(request, delegate.execute(request), start);
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> stream(ModelRequest request, Consumer<String> onChunk) {
+        long start = System.nanoTime();
+        return record(request, delegate.stream(request, onChunk), start);
+    }
+
+    /**
+     * @return the number of exchanges written to the file
+     */
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    /**
+     * @return the number of exchanges that could not be written to the file
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private CompletableFuture<ModelResponse> record(
+            ModelRequest request, CompletableFuture<ModelResponse> response, long start) {
+        // the callback is registered on the future of the delegate, so cancelling it still works
+        response.whenComplete(
+                (result, failure) -> {
+                    if (failure != null) {
+                        return;
+                    }
+                    Duration latency = Duration.ofNanos(System.nanoTime() - start);
+                    try {
+                        file.write(Recording.of(request, result, latency));
+                        recorded.increment();
+                    } catch (IOException e) {
+                        dropped.increment();
+                    }
+                });
+        return response;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.replay;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+import structra.assignment.framework.llm.ModelSession;
+import structra.assignment.framework.llm.cache.RequestFingerprint;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MachineLearningModel} re-serving the {@link Recording}s of a {@link RecordingModel},
+ * e.g. to benchmark question providers, parsers and caches with realistic responses, without
+ * network access or API costs.
+ *
+ * <p>A request is answered with the recordings of its {@link RequestFingerprint}, in the order
+ * they were recorded and starting over once all of them were served. Requests without a
+ * recording fail by default; alternatively they are answered with the next recording of the
+ * file, which replays a recorded workload even if its prompts are not reproducible. The number
+ * of choices of the request is ignored: the recorded response is served as is.
+ *
+ * <p>Every response is delayed by its recorded latency, divided by the {@link
+ * Builder#speedUp(double) speed-up}, so the replay follows the recorded latency distribution.
+ *
+ * @see RecordingFile
+ */
+public class ReplayModel implements MachineLearningModel {
+
+    /** How to answer requests without a recording. */
+    public enum MissPolicy {
+
+        /** Fails the request with a {@link NoSuchElementException}. */
+        FAIL,
+
+        /** Answers with the next recording of the file. */
+        NEXT
+    }
+
+    private final List<Recording> recordings;
+    private final Map<String, Replay> byFingerprint = new HashMap<>();
+    private final Replay sequence;
+    private final MissPolicy missPolicy;
+    private final double speedUp;
+    private final ModelSession defaultSession;
+
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ReplayModel(Builder builder) {
+        this.recordings = builder.recordings;
+        this.missPolicy = builder.missPolicy;
+        this.speedUp = builder.speedUp;
+        this.sequence = new Replay(recordings);
+
+        Map<String, List<Recording>> grouped = new HashMap<>();
+        for (Recording recording : recordings) {
+            grouped.computeIfAbsent(recording.getFingerprint(), key -> new ArrayList<>())
+                    .add(recording);
+        }
+        grouped.forEach((fingerprint, group) -> byFingerprint.put(fingerprint, new Replay(group)));
+        this.defaultSession = openSession("");
+    }
+
+    /**
+     * Creates a builder for a model re-serving the given recordings.
+     *
+     * @param recordings the recordings, at least one
+     * @return a new builder
+     */
+    @NonNull
+    public static Builder builder(@NonNull List<Recording> recordings) {
+        return new Builder(recordings);
+    }
+
+    /**
+     * Creates a builder for a model re-serving the recordings of a file.
+     *
+     * @param file the {@link RecordingFile} to replay
+     * @return a new builder
+     * @throws IOException If the file cannot be read.
+     */
+    @NonNull
+    public static Builder builder(@NonNull Path file) throws IOException {
+        return new Builder(RecordingFile.read(file));
+    }
+
+    @Override
+    public void setContext(String systemContext) {
+        defaultSession.setContext(systemContext);
+    }
+
+    @Override
+    public CompletableFuture<String> execute(String prompt) {
+        return defaultSession.execute(prompt);
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> execute(ModelRequest request) {
+        Replay replay = byFingerprint.get(RequestFingerprint.of(request));
+        if (replay == null) {
+            misses.increment();
+            if (missPolicy == MissPolicy.FAIL) {
+                return CompletableFuture.failedFuture(
+                        new NoSuchElementException("No recording for the request"));
+            }
+            replay = sequence;
+        }
+
+        Recording recording = replay.next();
+        replayed.increment();
+
+        long delay = (long) (recording.getLatency().toNanos() / speedUp);
+        if (delay <= 0) {
+            return CompletableFuture.completedFuture(recording.getResponse());
+        }
+        return CompletableFuture.supplyAsync(
+                recording::getResponse,
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * @return the recordings served by this model, in the order they were recorded
+     */
+    @NonNull
+    public List<Recording> getRecordings() {
+        return recordings;
+    }
+
+    /**
+     * @return the number of responses served
+     */
+    public long getReplayed() {
+        return replayed.sum();
+    }
+
+    /**
+     * @return the number of requests without a recording, whether they failed or not
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** Cycles through a group of recordings. */
+    private static final class Replay {
+        private final List<Recording> recordings;
+        private final AtomicInteger next = new AtomicInteger();
+
+        private Replay(List<Recording> recordings) {
+            this.recordings = recordings;
+        }
+
+        private Recording next() {
+            return recordings.get(Math.floorMod(next.getAndIncrement(), recordings.size()));
+        }
+    }
+
+    /** A builder for {@link ReplayModel} instances. */
+    public static final class Builder {
+
+        private final List<Recording> recordings;
+        private MissPolicy missPolicy = MissPolicy.FAIL;
+        private double speedUp = 1;
+
+        private Builder(List<Recording> recordings) {
+            Objects.requireNonNull(recordings, "recordings cannot be null");
+            if (recordings.isEmpty()) {
+                throw new IllegalArgumentException("recordings cannot be empty");
+            }
+            this.recordings = List.copyOf(recordings);
+        }
+
+        /** Sets how to answer requests without a recording, {@link MissPolicy#FAIL} by default. */
+        public Builder missPolicy(@NonNull MissPolicy missPolicy) {
+            this.missPolicy = Objects.requireNonNull(missPolicy, "missPolicy cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the factor the recorded latencies are divided by, {@code 1} by default. {@link
+         * Double#POSITIVE_INFINITY} serves every response immediately.
+         */
+        public Builder speedUp(double speedUp) {
+            if (!(speedUp > 0)) {
+                throw new IllegalArgumentException("speedUp must be positive");
+            }
+            this.speedUp = speedUp;
+            return this;
+        }
+
+        @NonNull
+        public ReplayModel build() {
+            return new ReplayModel(this);
+        }
+    }
+}
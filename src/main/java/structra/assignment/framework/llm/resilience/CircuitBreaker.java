@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.resilience;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Stops sending requests to a model after repeated failures, so callers fail fast instead of
+ * piling up timeouts while the provider is unavailable.
+ *
+ * <ul>
+ *   <li><strong>CLOSED:</strong> requests pass. After {@code failureThreshold} consecutive
+ *       failures the circuit opens.
+ *   <li><strong>OPEN:</strong> requests are rejected. After {@code openDuration} the circuit
+ *       becomes half-open.
+ *   <li><strong>HALF_OPEN:</strong> a single trial request passes. Its success closes the circuit,
+ *       its failure opens it again.
+ * </ul>
+ *
+ * <p>This class is thread-safe.
+ *
+ * @see ResilientModel
+ */
+public class CircuitBreaker {
+
+    /** Opens after 5 consecutive failures for 30 seconds. */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION);
+    }
+
+    /**
+     * @param failureThreshold the number of consecutive failures opening the circuit
+     * @param openDuration the time the circuit stays open before a trial request is allowed
+     */
+    public CircuitBreaker(int failureThreshold, @NonNull Duration openDuration) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = Objects.requireNonNull(openDuration).toNanos();
+    }
+
+    /**
+     * Asks for permission to send a request. Every granted permission has to be followed by
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #release()}.
+     *
+     * @return whether the request may be sent
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    /** Records a successful request. */
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Returns a permission without recording an outcome, e.g. since the request was cancelled or
+     * rejected locally before the model answered. A half-open circuit stays half-open and allows
+     * the next trial request.
+     */
+    public synchronized void release() {
+        trialInFlight = false;
+    }
+
+    /**
+     * Records a failed request.
+     *
+     * @return whether this failure opened the circuit
+     */
+    public synchronized boolean onFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN
+                || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            return true;
+        }
+        return false;
+    }
+
+    @NonNull
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** The states of a {@link CircuitBreaker}. */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.resilience;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.ForwardingModel;
+import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorates a {@link MachineLearningModel} with hedged requests, cutting the tail latency caused by
+ * a few slow calls.
+ *
+ * <p>If a request has not completed once it took longer than a percentile of the latencies of
+ * recent requests, e.g. the p95, a duplicate is sent. The first successful response wins and the
+ * other request is cancelled; the call only fails if both requests fail.
+ *
+ * <p>Hedges are limited by a budget: every call earns a fraction of a hedge, e.g. 0.05 for at most
+ * 5% extra requests, and every hedge spends a whole one. The budget holds at most {@link
+ * #MAX_BUDGET} hedges, so hedging cannot amplify the load during an outage, when every request is
+ * slow. No request is hedged before {@link #MIN_SAMPLES} latencies have been observed.
+ *
+ * <p>Latencies are measured from the start of the primary request until the first successful
+ * response, i.e. the latency the caller experienced.
+ *
+ * <p>Streamed requests are not hedged, since their chunks cannot be taken back once they have been
+ * delivered.
+ */
+public class HedgingModel extends ForwardingModel {
+
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    public static final double DEFAULT_BUDGET = 0.05;
+
+    /** The number of latencies required before the first request is hedged. */
+    public static final int MIN_SAMPLES = 50;
+
+    /** The maximum number of hedges the budget can save up. */
+    public static final double MAX_BUDGET = 10;
+
+    private static final int WINDOW_SIZE = 512;
+
+    private final LatencyWindow latencies;
+    private final double budgetPerCall;
+    private double budget;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    /**
+     * Decorates the given model, hedging requests slower than the {@link #DEFAULT_PERCENTILE} with
+     * a budget of {@link #DEFAULT_BUDGET}.
+     *
+     * @param delegate the decorated model
+     */
+    public HedgingModel(@NonNull MachineLearningModel delegate) {
+        this(delegate, DEFAULT_PERCENTILE, DEFAULT_BUDGET);
+    }
+
+    /**
+     * @param delegate the decorated model
+     * @param percentile the percentile of the recent latencies after which a request is hedged,
+     *     between 0 and 1
+     * @param budget the maximum number of hedges per call, between 0 and 1
+     */
+    public HedgingModel(@NonNull MachineLearningModel delegate, double percentile, double budget) {
+        super(delegate);
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1");
+        }
+        if (budget < 0 || budget > 1) {
+            throw new IllegalArgumentException("budget must be between 0 and 1");
+        }
+        this.latencies = new LatencyWindow(WINDOW_SIZE, percentile, MIN_SAMPLES);
+        this.budgetPerCall = budget;
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> execute(@NonNull ModelRequest request) {
+        calls.increment();
+        deposit();
+
+        Race race = new Race(request);
+        race.launch(false);
+
+        long threshold = latencies.get();
+        if (threshold >= 0 && !race.result.isDone()) {
+            CompletableFuture.delayedExecutor(threshold, TimeUnit.NANOSECONDS)
+                    .execute(() -> hedge(race));
+        }
+        return race.result;
+    }
+
+    /**
+     * @return the time after which requests are currently hedged, nothing if too few latencies
+     *     have been observed yet
+     */
+    @NonNull
+    public Optional<Duration> getThreshold() {
+        long threshold = latencies.get();
+        return threshold < 0 ? Optional.empty() : Optional.of(Duration.ofNanos(threshold));
+    }
+
+    /**
+     * @return the number of requests made by callers, streamed requests excluded
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * @return the number of duplicate requests sent
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * @return the number of calls answered by the duplicate request
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * @return the number of requests which were not hedged since the budget was exhausted
+     */
+    public long getBudgetExhausted() {
+        return budgetExhausted.sum();
+    }
+
+    private void hedge(Race race) {
+        if (race.result.isDone()) {
+            return;
+        }
+        if (!withdraw()) {
+            budgetExhausted.increment();
+            return;
+        }
+        hedges.increment();
+        race.launch(true);
+    }
+
+    private synchronized void deposit() {
+        budget = Math.min(MAX_BUDGET, budget + budgetPerCall);
+    }
+
+    private synchronized boolean withdraw() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        return true;
+    }
+
+    /** The requests sent for a single call, of which the first successful one wins. */
+    private final class Race {
+
+        private final ModelRequest request;
+        private final CompletableFuture<ModelResponse> result = new CompletableFuture<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final long start = System.nanoTime();
+
+        private volatile CompletableFuture<ModelResponse> primary;
+        private volatile CompletableFuture<ModelResponse> hedge;
+
+        private Race(ModelRequest request) {
+            this.request = request;
+            // cancel the outstanding requests if the caller cancels
+            result.whenComplete(
+                    (response, failure) -> {
+                        cancel(primary);
+                        cancel(hedge);
+                    });
+        }
+
+        private void launch(boolean hedged) {
+            pending.incrementAndGet();
+
+            CompletableFuture<ModelResponse> attempt;
+            try {
+                attempt = delegate.execute(request);
+            } catch (RuntimeException e) {
+                attempt = CompletableFuture.failedFuture(e);
+            }
+
+            if (hedged) {
+                hedge = attempt;
+            } else {
+                primary = attempt;
+            }
+            if (result.isDone()) {
+                cancel(attempt); // completed while the attempt was launched
+            }
+
+            attempt.whenComplete(
+                    (response, failure) -> {
+                        if (failure == null) {
+                            if (result.complete(response)) {
+                                // measured from the start of the primary: if the hedge won, this
+                                // is a lower bound of the latency of the cancelled primary, so
+                                // slow primaries keep the threshold from drifting down
+                                latencies.record(System.nanoTime() - start);
+                                if (hedged) {
+                                    hedgeWins.increment();
+                                }
+                            }
+                        } else if (pending.decrementAndGet() == 0) {
+                            result.completeExceptionally(failure);
+                        }
+                    });
+        }
+
+        private void cancel(CompletableFuture<ModelResponse> attempt) {
+            if (attempt != null && !attempt.isDone()) {
+                attempt.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of the most recent calls and computes a percentile of them. The percentile
+ * is recomputed after a number of new samples only, so reading it is cheap enough to be done for
+ * every call.
+ */
+final class LatencyWindow {
+
+    /** The number of new samples after which the percentile is recomputed. */
+    private static final int RECOMPUTE_INTERVAL = 16;
+
+    private final long[] samples;
+    private final double percentile;
+    private final int minSamples;
+
+    private int next;
+    private int count;
+    private int sinceRecompute;
+    private long value = -1;
+
+    /**
+     * @param size the number of most recent samples kept
+     * @param percentile the percentile to compute, between 0 and 1
+     * @param minSamples the number of samples required before a percentile is computed
+     */
+    LatencyWindow(int size, double percentile, int minSamples) {
+        this.samples = new long[size];
+        this.percentile = percentile;
+        this.minSamples = Math.min(minSamples, size);
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+
+        if (count >= minSamples && (value < 0 || ++sinceRecompute >= RECOMPUTE_INTERVAL)) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            value = sorted[(int) Math.min(count - 1, Math.ceil(percentile * count) - 1)];
+        }
+    }
+
+    /**
+     * @return the percentile in nanoseconds, -1 if there are not enough samples yet
+     */
+    synchronized long get() {
+        return value;
+    }
+}
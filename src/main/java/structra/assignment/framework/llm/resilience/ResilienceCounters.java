@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.resilience;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts every decision made by a {@link ResilientModel}. All counters are cumulative and cheap to
+ * update from many threads.
+ */
+public class ResilienceCounters {
+
+    final LongAdder calls = new LongAdder();
+    final LongAdder attempts = new LongAdder();
+    final LongAdder successes = new LongAdder();
+    final LongAdder failures = new LongAdder();
+    final LongAdder retries = new LongAdder();
+    final LongAdder retryAfterHonoured = new LongAdder();
+    final LongAdder permanentFailures = new LongAdder();
+    final LongAdder retriesExhausted = new LongAdder();
+    final LongAdder circuitOpened = new LongAdder();
+    final LongAdder shortCircuited = new LongAdder();
+
+    /** @return the number of requests made by callers */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /** @return the number of requests sent to the model, retries included */
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    /** @return the number of calls which eventually succeeded */
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    /** @return the number of calls which eventually failed */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /** @return the number of scheduled retries */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /** @return the number of retries delayed as requested by a {@code Retry-After} header */
+    public long getRetryAfterHonoured() {
+        return retryAfterHonoured.sum();
+    }
+
+    /** @return the number of calls failing with a failure which is not retried */
+    public long getPermanentFailures() {
+        return permanentFailures.sum();
+    }
+
+    /** @return the number of calls failing after the last allowed attempt */
+    public long getRetriesExhausted() {
+        return retriesExhausted.sum();
+    }
+
+    /** @return the number of times the circuit opened */
+    public long getCircuitOpened() {
+        return circuitOpened.sum();
+    }
+
+    /** @return the number of attempts rejected because the circuit was open */
+    public long getShortCircuited() {
+        return shortCircuited.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "calls="
+                + getCalls()
+                + ", attempts="
+                + getAttempts()
+                + ", successes="
+                + getSuccesses()
+                + ", failures="
+                + getFailures()
+                + ", retries="
+                + getRetries()
+                + ", retryAfterHonoured="
+                + getRetryAfterHonoured()
+                + ", permanentFailures="
+                + getPermanentFailures()
+                + ", retriesExhausted="
+                + getRetriesExhausted()
+                + ", circuitOpened="
+                + getCircuitOpened()
+                + ", shortCircuited="
+                + getShortCircuited();
+    }
+}
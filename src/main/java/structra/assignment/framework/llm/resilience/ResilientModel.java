@@ -0,0 +1,221 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.resilience;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.Cancellation;
+import structra.assignment.framework.llm.ForwardingModel;
+import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+import structra.assignment.framework.llm.transport.ModelHttpException;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Decorates a {@link MachineLearningModel} with retries and a circuit breaker.
+ *
+ * <ul>
+ *   <li>Transient failures are retried according to a {@link RetryPolicy}, using exponential
+ *       backoff with jitter. A delay requested by the server via a {@code Retry-After} header,
+ *       e.g. with a {@code 429} response, is honoured.
+ *   <li>Retryable failures are counted by a {@link CircuitBreaker}. While it is open, requests
+ *       fail immediately with a {@link CircuitOpenException}. Permanent failures, such as an
+ *       invalid request, show that the model is reachable and do not open the circuit.
+ *       Cancellations and local rejections leave the circuit unchanged.
+ *   <li>Streamed requests are only retried if no chunk has been delivered yet.
+ * </ul>
+ *
+ * <p>Every decision is counted in the {@link ResilienceCounters} of the instance.
+ */
+public class ResilientModel extends ForwardingModel {
+
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final ResilienceCounters counters = new ResilienceCounters();
+
+    /**
+     * Decorates the given model using the {@link RetryPolicy#DEFAULT} policy and a default
+     * {@link CircuitBreaker}.
+     *
+     * @param delegate the decorated model
+     */
+    public ResilientModel(@NonNull MachineLearningModel delegate) {
+        this(delegate, RetryPolicy.DEFAULT, new CircuitBreaker());
+    }
+
+    /**
+     * @param delegate the decorated model
+     * @param retryPolicy the policy deciding about retries
+     * @param circuitBreaker the circuit breaker guarding the delegate
+     */
+    public ResilientModel(
+            @NonNull MachineLearningModel delegate,
+            @NonNull RetryPolicy retryPolicy,
+            @NonNull CircuitBreaker circuitBreaker) {
+        super(delegate);
+        this.retryPolicy = Objects.requireNonNull(retryPolicy, "retryPolicy cannot be null");
+        this.circuitBreaker =
+                Objects.requireNonNull(circuitBreaker, "circuitBreaker cannot be null");
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> execute(ModelRequest request) {
+        return call(() -> delegate.execute(request), () -> true);
+    }
+
+    @Override
+    public CompletableFuture<ModelResponse> stream(ModelRequest request, Consumer<String> onChunk) {
+        AtomicBoolean delivered = new AtomicBoolean();
+        Consumer<String> tracking =
+                chunk -> {
+                    delivered.set(true);
+                    onChunk.accept(chunk);
+                };
+        return call(() -> delegate.stream(request, tracking), () -> !delivered.get());
+    }
+
+    @NonNull
+    public ResilienceCounters getCounters() {
+        return counters;
+    }
+
+    @NonNull
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    private CompletableFuture<ModelResponse> call(
+            Supplier<CompletableFuture<ModelResponse>> send, BooleanSupplier mayRetry) {
+        counters.calls.increment();
+        CompletableFuture<ModelResponse> result = new CompletableFuture<>();
+        attempt(send, mayRetry, 1, result);
+        return result;
+    }
+
+    private void attempt(
+            Supplier<CompletableFuture<ModelResponse>> send,
+            BooleanSupplier mayRetry,
+            int attempt,
+            CompletableFuture<ModelResponse> result) {
+        if (result.isDone()) {
+            return; // cancelled by the caller
+        }
+
+        if (!circuitBreaker.tryAcquire()) {
+            counters.shortCircuited.increment();
+            fail(result, new CircuitOpenException("Circuit is open, the request was not sent"));
+            return;
+        }
+
+        counters.attempts.increment();
+        CompletableFuture<ModelResponse> future;
+        try {
+            future = send.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        Cancellation.propagate(result, future);
+
+        future.whenComplete(
+                (response, failure) -> {
+                    if (failure == null) {
+                        circuitBreaker.onSuccess();
+                        counters.successes.increment();
+                        result.complete(response);
+                        return;
+                    }
+
+                    Throwable cause = RetryPolicy.unwrap(failure);
+                    if (!retryPolicy.isRetryable(cause)) {
+                        // only an answer of the model proves it available, cancellations and
+                        // local rejections leave the state of the circuit as it was
+                        if (cause instanceof ModelHttpException) {
+                            circuitBreaker.onSuccess();
+                        } else {
+                            circuitBreaker.release();
+                        }
+                        counters.permanentFailures.increment();
+                        fail(result, cause);
+                        return;
+                    }
+
+                    if (circuitBreaker.onFailure()) {
+                        counters.circuitOpened.increment();
+                    }
+
+                    Optional<Duration> delay = nextDelay(cause, attempt);
+                    if (delay.isEmpty() || !mayRetry.getAsBoolean()) {
+                        counters.retriesExhausted.increment();
+                        fail(result, cause);
+                        return;
+                    }
+
+                    counters.retries.increment();
+                    CompletableFuture.delayedExecutor(delay.get().toMillis(), TimeUnit.MILLISECONDS)
+                            .execute(() -> attempt(send, mayRetry, attempt + 1, result));
+                });
+    }
+
+    /**
+     * Computes the delay before the next attempt.
+     *
+     * @return the delay, or nothing if the request must not be retried
+     */
+    private Optional<Duration> nextDelay(Throwable cause, int attempt) {
+        if (attempt >= retryPolicy.getMaxAttempts()) {
+            return Optional.empty();
+        }
+
+        Duration backoff = retryPolicy.backoff(attempt);
+        if (!(cause instanceof ModelHttpException)) {
+            return Optional.of(backoff);
+        }
+
+        Optional<Duration> retryAfter = ((ModelHttpException) cause).getRetryAfter();
+        if (retryAfter.isEmpty() || retryAfter.get().compareTo(backoff) <= 0) {
+            return Optional.of(backoff);
+        }
+        if (retryAfter.get().compareTo(retryPolicy.getMaxDelay()) > 0) {
+            return Optional.empty();
+        }
+        counters.retryAfterHonoured.increment();
+        return retryAfter;
+    }
+
+    private void fail(CompletableFuture<ModelResponse> result, Throwable cause) {
+        counters.failures.increment();
+        result.completeExceptionally(cause);
+    }
+}
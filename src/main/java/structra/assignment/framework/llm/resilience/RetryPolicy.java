@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.resilience;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.limit.RateLimitExceededException;
+import structra.assignment.framework.llm.transport.ModelHttpException;
+
+import java.io.FileNotFoundException;
+import java.nio.file.AccessDeniedException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when a failed request is sent again. Delays grow exponentially from a base
+ * delay up to a maximum delay and are randomized ("full jitter"), so that many clients failing at
+ * the same time do not retry at the same time either.
+ *
+ * @see ResilientModel
+ */
+public class RetryPolicy {
+
+    /** Three attempts, starting with a delay of 200ms, waiting at most 10s. */
+    public static final RetryPolicy DEFAULT =
+            new RetryPolicy(3, Duration.ofMillis(200), Duration.ofSeconds(10));
+
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+
+    /**
+     * @param maxAttempts the maximum number of attempts, including the first one
+     * @param baseDelay the upper bound of the delay before the first retry
+     * @param maxDelay the upper bound of any delay. Requests the server asks to delay for longer,
+     *     via a {@code Retry-After} header, are not retried.
+     */
+    public RetryPolicy(int maxAttempts, @NonNull Duration baseDelay, @NonNull Duration maxDelay) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (baseDelay.isNegative() || maxDelay.compareTo(baseDelay) < 0) {
+            throw new IllegalArgumentException("delays must satisfy 0 <= baseDelay <= maxDelay");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = Objects.requireNonNull(baseDelay);
+        this.maxDelay = Objects.requireNonNull(maxDelay);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    @NonNull
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * Decides whether the given failure may disappear if the request is sent again. Client
+     * errors, such as an invalid request or an invalid API key, cancellations and requests
+     * rejected by a local limit are permanent.
+     *
+     * @param failure the cause of the failed attempt
+     * @return whether the request should be retried
+     */
+    public boolean isRetryable(@NonNull Throwable failure) {
+        Throwable cause = unwrap(failure);
+        if (cause instanceof ModelHttpException) {
+            return ((ModelHttpException) cause).isTransient();
+        }
+        return !(cause instanceof CancellationException
+                || cause instanceof CircuitOpenException
+                || cause instanceof RateLimitExceededException
+                || cause instanceof FileNotFoundException
+                || cause instanceof AccessDeniedException
+                || cause instanceof IllegalArgumentException
+                || cause instanceof NullPointerException);
+    }
+
+    /**
+     * Computes the delay before the given retry.
+     *
+     * @param retry the number of the retry, starting at 1
+     * @return a random delay between zero and the exponential backoff bound
+     */
+    @NonNull
+    public Duration backoff(int retry) {
+        long bound = baseDelay.toMillis() << Math.min(retry - 1, 30);
+        if (bound <= 0 || bound > maxDelay.toMillis()) {
+            bound = maxDelay.toMillis();
+        }
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(bound + 1));
+    }
+
+    /**
+     * Removes the wrappers added by {@link java.util.concurrent.CompletableFuture}.
+     *
+     * @param failure the failure
+     * @return the actual cause
+     */
+    @NonNull
+    static Throwable unwrap(@NonNull Throwable failure) {
+        Throwable cause = failure;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
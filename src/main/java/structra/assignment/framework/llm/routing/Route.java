@@ -0,0 +1,282 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.routing;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.KeyProvider;
+import structra.assignment.framework.llm.limit.RateLimiter;
+import structra.assignment.framework.llm.limit.RateLimits;
+import structra.assignment.framework.llm.transport.HttpTransport;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A single API key at a single endpoint, one of the routes of a {@link RoutePool}.
+ *
+ * <p>The key is fetched from the {@link KeyProvider} on first use and cached. It is fetched again
+ * once it is older than the {@link Builder#keyTimeToLive(Duration) key time to live} and after the
+ * endpoint rejected it as unauthorized, so keys rotated by the provider are picked up without
+ * asking the provider on every request.
+ *
+ * <p>Besides the key, every route has its own quotas, a weight for routing and a health state
+ * maintained by its pool. This class is thread-safe.
+ */
+public class Route {
+
+    public static final Duration DEFAULT_KEY_TIME_TO_LIVE = Duration.ofMinutes(15);
+
+    private final KeyProvider keyProvider;
+    private final HttpTransport transport;
+    private final RateLimits rateLimits;
+    private final int weight;
+    private final long keyTimeToLive;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder ejections = new LongAdder();
+
+    private String apiKey;
+    private RateLimiter rateLimiter;
+    private long keyResolvedAt;
+
+    private int consecutiveRejections;
+    private long ejectedUntil;
+    private boolean ejected;
+
+    private Route(Builder builder) {
+        this.keyProvider = builder.keyProvider;
+        this.transport = builder.transport;
+        this.rateLimits = builder.rateLimits;
+        this.weight = builder.weight;
+        this.keyTimeToLive = builder.keyTimeToLive.toNanos();
+    }
+
+    /**
+     * Creates a builder for a route using the keys of the given provider. All other settings are
+     * optional.
+     *
+     * @param keyProvider the provider of the API key
+     * @return a new builder
+     */
+    @NonNull
+    public static Builder builder(@NonNull KeyProvider keyProvider) {
+        return new Builder(keyProvider);
+    }
+
+    @NonNull
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the cached API key, fetched again from the provider if it expired
+     */
+    @NonNull
+    public synchronized String getApiKey() {
+        if (apiKey == null || System.nanoTime() - keyResolvedAt >= keyTimeToLive) {
+            String key = keyProvider.getApiKey();
+            if (key == null) {
+                throw new IllegalStateException("The key provider returned no key");
+            }
+            if (!key.equals(apiKey)) {
+                apiKey = key;
+                rateLimiter = null;
+            }
+            keyResolvedAt = System.nanoTime();
+        }
+        return apiKey;
+    }
+
+    /**
+     * @return the limiter enforcing the quotas of the current key, nothing if the route has no
+     *     quotas
+     * @see RateLimiter#forKey(String, RateLimits)
+     */
+    @NonNull
+    public synchronized Optional<RateLimiter> getRateLimiter() {
+        if (rateLimits == null) {
+            return Optional.empty();
+        }
+        String key = getApiKey();
+        if (rateLimiter == null) {
+            rateLimiter = RateLimiter.forKey(key, rateLimits);
+        }
+        return Optional.of(rateLimiter);
+    }
+
+    /**
+     * @return the number of requests sent via this route which have not completed yet
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return the number of requests routed via this route
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return the number of times this route was ejected from its pool
+     */
+    public long getEjections() {
+        return ejections.sum();
+    }
+
+    /**
+     * @return whether the route is currently ejected from its pool after repeated rejections
+     */
+    public synchronized boolean isEjected() {
+        return ejected && System.nanoTime() - ejectedUntil < 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Route{endpoint="
+                + transport.getEndpoint()
+                + ", weight="
+                + weight
+                + ", outstanding="
+                + outstanding.get()
+                + ", ejected="
+                + isEjected()
+                + "}";
+    }
+
+    synchronized long getEjectedUntil() {
+        return ejectedUntil;
+    }
+
+    void begin() {
+        outstanding.incrementAndGet();
+        requests.increment();
+    }
+
+    void end() {
+        outstanding.decrementAndGet();
+    }
+
+    synchronized void onSuccess() {
+        consecutiveRejections = 0;
+        ejected = false;
+    }
+
+    /**
+     * Records a rejection of the key and ejects the route once the threshold of consecutive
+     * rejections is reached.
+     *
+     * @param unauthorized whether the key was rejected as invalid, so it is fetched again
+     * @param ejection the time the route is ejected for
+     * @param threshold the number of consecutive rejections ejecting the route
+     */
+    synchronized void onRejected(boolean unauthorized, Duration ejection, int threshold) {
+        if (unauthorized) {
+            keyResolvedAt = System.nanoTime() - keyTimeToLive;
+        }
+        if (++consecutiveRejections >= threshold) {
+            consecutiveRejections = 0;
+            ejected = true;
+            ejectedUntil = System.nanoTime() + ejection.toNanos();
+            ejections.increment();
+        }
+    }
+
+    /** A builder for {@link Route} instances. */
+    public static final class Builder {
+
+        private final KeyProvider keyProvider;
+        private HttpTransport transport;
+        private RateLimits rateLimits;
+        private int weight = 1;
+        private Duration keyTimeToLive = DEFAULT_KEY_TIME_TO_LIVE;
+
+        private Builder(KeyProvider keyProvider) {
+            this.keyProvider = Objects.requireNonNull(keyProvider, "keyProvider cannot be null");
+        }
+
+        /**
+         * Sets the transport used for the requests of the route, which also defines the endpoint.
+         * Uses the {@link HttpTransport#shared()} transport by default.
+         */
+        public Builder transport(@NonNull HttpTransport transport) {
+            this.transport = Objects.requireNonNull(transport, "transport cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the quotas of the key, which are enforced before a request is sent. Requests are
+         * not limited by default.
+         */
+        public Builder rateLimits(RateLimits rateLimits) {
+            this.rateLimits = rateLimits;
+            return this;
+        }
+
+        /**
+         * Sets the share of the requests of the route relative to the other routes of its pool, 1
+         * by default. A route with weight 2 receives twice as many concurrent requests as a route
+         * with weight 1.
+         */
+        public Builder weight(int weight) {
+            if (weight < 1) {
+                throw new IllegalArgumentException("weight must be at least 1");
+            }
+            this.weight = weight;
+            return this;
+        }
+
+        /**
+         * Sets the time the key is cached before it is fetched from the provider again, {@link
+         * #DEFAULT_KEY_TIME_TO_LIVE} by default.
+         */
+        public Builder keyTimeToLive(@NonNull Duration keyTimeToLive) {
+            Objects.requireNonNull(keyTimeToLive, "keyTimeToLive cannot be null");
+            if (keyTimeToLive.isNegative() || keyTimeToLive.isZero()) {
+                throw new IllegalArgumentException("keyTimeToLive must be positive");
+            }
+            this.keyTimeToLive = keyTimeToLive;
+            return this;
+        }
+
+        @NonNull
+        public Route build() {
+            if (transport == null) {
+                transport = HttpTransport.shared();
+            }
+            return new Route(this);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.routing;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.KeyProvider;
+import structra.assignment.framework.llm.transport.ModelHttpException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Spreads requests over several {@link Route}s, i.e. API keys and endpoints, so the quota of a
+ * single key is no longer the limit of the throughput.
+ *
+ * <p>Every request is routed via the healthy route with the fewest outstanding requests relative
+ * to its {@link Route#getWeight() weight}; ties are broken round robin. A route whose key is
+ * rejected {@code ejectionThreshold} times in a row with {@code 401 Unauthorized}, {@code 403
+ * Forbidden} or {@code 429 Too Many Requests} is ejected from the pool for the ejection duration,
+ * or the delay requested by the server if that is longer. If every route is ejected, requests are
+ * routed via the route whose ejection ends first, so the pool keeps probing instead of failing.
+ *
+ * <p>This class is thread-safe.
+ */
+public class RoutePool {
+
+    /** Ejects a route after 3 consecutive rejections for 30 seconds. */
+    public static final int DEFAULT_EJECTION_THRESHOLD = 3;
+
+    public static final Duration DEFAULT_EJECTION_DURATION = Duration.ofSeconds(30);
+
+    private static final int UNAUTHORIZED = 401;
+    private static final int FORBIDDEN = 403;
+
+    private final List<Route> routes;
+    private final int ejectionThreshold;
+    private final Duration ejectionDuration;
+
+    private int nextRoute;
+
+    /**
+     * Creates a pool of the given routes using the default ejection settings.
+     *
+     * @param routes the routes, at least one
+     */
+    public RoutePool(@NonNull List<Route> routes) {
+        this(routes, DEFAULT_EJECTION_THRESHOLD, DEFAULT_EJECTION_DURATION);
+    }
+
+    /**
+     * @param routes the routes, at least one
+     * @param ejectionThreshold the number of consecutive rejections ejecting a route
+     * @param ejectionDuration the minimum time an ejected route receives no requests
+     */
+    public RoutePool(
+            @NonNull List<Route> routes,
+            int ejectionThreshold,
+            @NonNull Duration ejectionDuration) {
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("routes cannot be empty");
+        }
+        if (ejectionThreshold < 1) {
+            throw new IllegalArgumentException("ejectionThreshold must be at least 1");
+        }
+        this.routes = List.copyOf(routes);
+        this.ejectionThreshold = ejectionThreshold;
+        this.ejectionDuration =
+                Objects.requireNonNull(ejectionDuration, "ejectionDuration cannot be null");
+    }
+
+    /**
+     * Creates a pool of the given routes using the default ejection settings.
+     *
+     * @param routes the routes, at least one
+     * @return the new pool
+     */
+    @NonNull
+    public static RoutePool of(@NonNull Route... routes) {
+        return new RoutePool(List.of(routes));
+    }
+
+    /**
+     * Creates a pool with a single route using the keys of the given provider at the default
+     * endpoint.
+     *
+     * @param keyProvider the provider of the API key
+     * @return the new pool
+     */
+    @NonNull
+    public static RoutePool single(@NonNull KeyProvider keyProvider) {
+        return of(Route.builder(keyProvider).build());
+    }
+
+    /**
+     * Picks the route for a new request. Every picked route has to be released via {@link
+     * #release(Route, Throwable)} once the request completed.
+     *
+     * @return the healthy route with the fewest outstanding requests relative to its weight
+     */
+    @NonNull
+    public synchronized Route select() {
+        Route best = null;
+        Route fallback = null;
+        int size = routes.size();
+
+        for (int i = 0; i < size; i++) {
+            Route route = routes.get((nextRoute + i) % size);
+            if (route.isEjected()) {
+                if (fallback == null || route.getEjectedUntil() - fallback.getEjectedUntil() < 0) {
+                    fallback = route;
+                }
+            } else if (best == null || isLessLoaded(route, best)) {
+                best = route;
+            }
+        }
+        nextRoute = (nextRoute + 1) % size;
+
+        Route route = best != null ? best : fallback;
+        route.begin();
+        return route;
+    }
+
+    /**
+     * Releases a route picked by {@link #select()} and updates its health with the outcome of the
+     * request.
+     *
+     * @param route the route of the request
+     * @param failure the failure of the request, {@code null} if it succeeded
+     */
+    public void release(@NonNull Route route, Throwable failure) {
+        route.end();
+
+        Throwable cause = unwrap(failure);
+        if (cause == null) {
+            route.onSuccess();
+        } else if (cause instanceof ModelHttpException e && isRejection(e.getStatusCode())) {
+            Duration ejection = e.getRetryAfter().orElse(Duration.ZERO);
+            if (ejection.compareTo(ejectionDuration) < 0) {
+                ejection = ejectionDuration;
+            }
+            boolean unauthorized = e.getStatusCode() != ModelHttpException.TOO_MANY_REQUESTS;
+            route.onRejected(unauthorized, ejection, ejectionThreshold);
+        }
+    }
+
+    /**
+     * @return the routes of this pool
+     */
+    @NonNull
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    private static boolean isRejection(int statusCode) {
+        return statusCode == UNAUTHORIZED
+                || statusCode == FORBIDDEN
+                || statusCode == ModelHttpException.TOO_MANY_REQUESTS;
+    }
+
+    /** Compares the outstanding requests per weight without dividing. */
+    private static boolean isLessLoaded(Route route, Route other) {
+        return (long) route.getOutstanding() * other.getWeight()
+                < (long) other.getOutstanding() * route.getWeight();
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        while ((failure instanceof CompletionException || failure instanceof ExecutionException)
+                && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+}
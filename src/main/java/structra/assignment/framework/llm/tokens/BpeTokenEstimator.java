@@ -0,0 +1,342 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.tokens;
+
+import lombok.NonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts tokens with a byte pair encoding, like the tokenizers of GPT models, but entirely offline
+ * with a vocabulary loaded from the classpath.
+ *
+ * <p>Text is split into words, numbers, punctuation and whitespace, which are encoded separately:
+ * every piece starts as its UTF-8 bytes, and adjacent tokens are merged in the order of the merge
+ * list until no merge applies. The vocabulary of {@link #shared()} was learned from English prose
+ * and source code. Its vocabulary is smaller than the one of the API, so it tends to overestimate
+ * English text slightly, which errs on the safe side when budgeting.
+ *
+ * <p>The counts of recent pieces are cached, so counting mostly consists of splitting the text.
+ * This class is thread-safe.
+ */
+public final class BpeTokenEstimator implements TokenEstimator {
+
+    /** The resource holding the merges of the {@link #shared()} estimator. */
+    public static final String DEFAULT_MERGES = "bpe-merges.txt";
+
+    /**
+     * The maximum length of a piece encoded as a whole. Longer pieces, e.g. runs of whitespace,
+     * are encoded in chunks of this length, which keeps the quadratic merging cheap.
+     */
+    private static final int MAX_PIECE_LENGTH = 64;
+
+    /** The maximum number of cached piece counts, after which the cache is cleared. */
+    private static final int MAX_CACHED_PIECES = 1 << 16;
+
+    private static final int BYTES = 256;
+    private static final int NONE = -1;
+
+    private static final int TYPE_LETTER = 0;
+    private static final int TYPE_NUMBER = 1;
+    private static final int TYPE_OTHER = 2;
+
+    /** Open addressing table of the merges, mapping a pair of tokens to its rank. */
+    private final long[] pairs;
+
+    private final int[] ranks;
+    private final int merges;
+    private final Map<String, Integer> cache = new ConcurrentHashMap<>();
+
+    private BpeTokenEstimator(int[] lefts, int[] rights, int merges) {
+        this.merges = merges;
+        int capacity = Integer.highestOneBit(Math.max(merges, 1) * 2) * 2;
+        this.pairs = new long[capacity];
+        this.ranks = new int[capacity];
+        Arrays.fill(ranks, NONE);
+        for (int rank = 0; rank < merges; rank++) {
+            long pair = pair(lefts[rank], rights[rank]);
+            int slot = slot(pair);
+            if (ranks[slot] == NONE) {
+                pairs[slot] = pair;
+                ranks[slot] = rank; // the first of duplicate merges wins
+            }
+        }
+    }
+
+    /**
+     * Returns the estimator using the merges of the {@link #DEFAULT_MERGES} resource, loading them
+     * on first use.
+     *
+     * @return the shared estimator
+     * @throws UncheckedIOException If the resource cannot be read.
+     */
+    @NonNull
+    public static BpeTokenEstimator shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Loads an estimator from a list of merges. Every line holds the two tokens merged, separated
+     * by a space. Counting from zero, the {@code n}-th merge creates the token {@code 256 + n},
+     * and the tokens {@code 0} to {@code 255} are single bytes. Blank lines and lines starting
+     * with {@code #} are skipped.
+     *
+     * @param merges the list of merges, ordered by precedence; it is not closed
+     * @return the new estimator
+     * @throws IOException If the list cannot be read or is malformed.
+     */
+    @NonNull
+    public static BpeTokenEstimator load(@NonNull InputStream merges) throws IOException {
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(merges, StandardCharsets.UTF_8));
+        int[] lefts = new int[1024];
+        int[] rights = new int[1024];
+        int count = 0;
+        int lineNumber = 0;
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+
+            int space = line.indexOf(' ');
+            int left;
+            int right;
+            try {
+                left = Integer.parseInt(line.substring(0, Math.max(space, 0)));
+                right = Integer.parseInt(line.substring(space + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed merge on line " + lineNumber + ": " + line);
+            }
+            if (left < 0 || right < 0 || left >= BYTES + count || right >= BYTES + count) {
+                throw new IOException("Unknown token merged on line " + lineNumber + ": " + line);
+            }
+
+            if (count == lefts.length) {
+                lefts = Arrays.copyOf(lefts, count * 2);
+                rights = Arrays.copyOf(rights, count * 2);
+            }
+            lefts[count] = left;
+            rights[count] = right;
+            count++;
+        }
+        return new BpeTokenEstimator(lefts, rights, count);
+    }
+
+    @Override
+    public int count(@NonNull String text) {
+        int tokens = 0;
+        int length = text.length();
+        for (int start = 0; start < length; ) {
+            int end = endOfPiece(text, start);
+            for (int chunk = start; chunk < end; chunk += MAX_PIECE_LENGTH) {
+                int chunkEnd = Math.min(end, chunk + MAX_PIECE_LENGTH);
+                tokens += countPiece(text.substring(chunk, chunkEnd));
+            }
+            start = end;
+        }
+        return tokens;
+    }
+
+    /**
+     * Finds the end of the piece starting at the given index. Pieces are split like by the
+     * pattern {@code '(?:[sdmt]|ll|ve|re)| ?\p{L}+| ?\p{N}{1,3}| ?[^\s\p{L}\p{N}]+|\s+(?!\S)|\s+}
+     * of GPT tokenizers, but without the overhead of a regular expression.
+     */
+    private static int endOfPiece(String text, int start) {
+        int length = text.length();
+        char first = text.charAt(start);
+
+        if (first == '\'' && start + 1 < length) {
+            char next = text.charAt(start + 1);
+            if (next == 's' || next == 'd' || next == 'm' || next == 't') {
+                return start + 2;
+            }
+            if (text.startsWith("ll", start + 1)
+                    || text.startsWith("ve", start + 1)
+                    || text.startsWith("re", start + 1)) {
+                return start + 3;
+            }
+        }
+
+        int index = start;
+        if (first == ' ' && start + 1 < length && !isSpace(text.charAt(start + 1))) {
+            index++; // a single space belongs to the following word, number or punctuation
+        } else if (isSpace(first)) {
+            int end = start + 1;
+            while (end < length && isSpace(text.charAt(end))) {
+                end++;
+            }
+            // the last space of a run belongs to the following piece, unless it is alone
+            return end < length && end - start > 1 ? end - 1 : end;
+        }
+
+        int type = typeOf(text.codePointAt(index));
+        int end = index + Character.charCount(text.codePointAt(index));
+        int count = 1;
+        while (end < length) {
+            int codePoint = text.codePointAt(end);
+            if (typeOf(codePoint) != type
+                    || isSpace(codePoint)
+                    || (type == TYPE_NUMBER && count == 3)) {
+                break;
+            }
+            end += Character.charCount(codePoint);
+            count++;
+        }
+        return end;
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+
+    private static int typeOf(int codePoint) {
+        if (Character.isLetter(codePoint)) {
+            return TYPE_LETTER;
+        }
+        switch (Character.getType(codePoint)) {
+            case Character.DECIMAL_DIGIT_NUMBER:
+            case Character.LETTER_NUMBER:
+            case Character.OTHER_NUMBER:
+                return TYPE_NUMBER;
+            default:
+                return TYPE_OTHER;
+        }
+    }
+
+    /**
+     * @return the number of distinct tokens, single bytes included
+     */
+    public int getVocabularySize() {
+        return BYTES + merges;
+    }
+
+    private int countPiece(String piece) {
+        if (piece.length() == 1 && piece.charAt(0) < 0x80) {
+            return 1;
+        }
+
+        Integer cached = cache.get(piece);
+        if (cached != null) {
+            return cached;
+        }
+
+        int count = encode(piece.getBytes(StandardCharsets.UTF_8));
+        if (cache.size() >= MAX_CACHED_PIECES) {
+            cache.clear();
+        }
+        cache.put(piece, count);
+        return count;
+    }
+
+    /** Applies the merges to the bytes of a piece and returns the number of remaining tokens. */
+    private int encode(byte[] bytes) {
+        int[] tokens = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            tokens[i] = bytes[i] & 0xFF;
+        }
+
+        int length = tokens.length;
+        while (length > 1) {
+            int bestRank = Integer.MAX_VALUE;
+            int best = NONE;
+            for (int i = 0; i < length - 1; i++) {
+                int rank = rank(tokens[i], tokens[i + 1]);
+                if (rank != NONE && rank < bestRank) {
+                    bestRank = rank;
+                    best = i;
+                }
+            }
+            if (best == NONE) {
+                break;
+            }
+
+            // merge every occurrence of the pair, as later occurrences have the same rank
+            int left = tokens[best];
+            int right = tokens[best + 1];
+            int merged = BYTES + bestRank;
+            int write = best;
+            for (int read = best; read < length; read++) {
+                if (read < length - 1 && tokens[read] == left && tokens[read + 1] == right) {
+                    tokens[write++] = merged;
+                    read++;
+                } else {
+                    tokens[write++] = tokens[read];
+                }
+            }
+            length = write;
+        }
+        return length;
+    }
+
+    private int rank(int left, int right) {
+        long pair = pair(left, right);
+        int slot = slot(pair);
+        return pairs[slot] == pair ? ranks[slot] : NONE;
+    }
+
+    /** Returns the slot of the pair, or the empty slot where it would be inserted. */
+    private int slot(long pair) {
+        int mask = pairs.length - 1;
+        int slot = (int) ((pair * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (ranks[slot] != NONE && pairs[slot] != pair) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long pair(int left, int right) {
+        return ((long) left << 32) | right;
+    }
+
+    /** Lazily loads the shared estimator on first use. */
+    private static final class SharedHolder {
+        private static final BpeTokenEstimator INSTANCE = loadDefault();
+
+        private static BpeTokenEstimator loadDefault() {
+            try (InputStream merges =
+                    BpeTokenEstimator.class.getResourceAsStream(DEFAULT_MERGES)) {
+                if (merges == null) {
+                    throw new IOException("Resource not found: " + DEFAULT_MERGES);
+                }
+                return load(merges);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot load the token merges", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.tokens;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.context.ChatMessage;
+
+import java.util.Collection;
+
+/**
+ * Estimates the number of tokens a text occupies in the context window of a language model.
+ * Estimations are used to budget requests before they are sent, so implementations have to be
+ * cheap enough to be called on every request.
+ */
+public interface TokenEstimator {
+
+    /** Tokens added by the API for every message, e.g. for the role and separators. */
+    int TOKENS_PER_MESSAGE = 4;
+
+    /** Tokens added by the API to prime the reply of the assistant. */
+    int TOKENS_PER_REPLY = 3;
+
+    /** A rough estimator for English text, assuming four characters per token. */
+    TokenEstimator HEURISTIC = text -> (text.length() + 3) / 4;
+
+    /**
+     * The estimator used if none is specified, e.g. for history trimming and rate limiting. It is
+     * the offline byte pair encoding of {@link BpeTokenEstimator#shared()}.
+     */
+    TokenEstimator DEFAULT = BpeTokenEstimator.shared();
+
+    /**
+     * Estimates the number of tokens of the given text.
+     *
+     * @param text the text to estimate
+     * @return the estimated number of tokens
+     */
+    int count(@NonNull String text);
+
+    /**
+     * Estimates the number of tokens of a single message, including the per message overhead.
+     *
+     * @param message the message to estimate
+     * @return the estimated number of tokens
+     */
+    default int count(@NonNull ChatMessage message) {
+        return TOKENS_PER_MESSAGE + count(message.getContent());
+    }
+
+    /**
+     * Estimates the number of tokens of a request consisting of the given messages.
+     *
+     * @param messages the messages of the request
+     * @return the estimated number of tokens
+     */
+    default int count(@NonNull Collection<ChatMessage> messages) {
+        int tokens = TOKENS_PER_REPLY;
+        for (ChatMessage message : messages) {
+            tokens += count(message);
+        }
+        return tokens;
+    }
+
+    /**
+     * Estimates the number of prompt tokens of a request, consisting of its system context,
+     * history and prompt.
+     *
+     * @param request the request to estimate
+     * @return the estimated number of tokens
+     */
+    default int count(@NonNull ModelRequest request) {
+        // the history already includes the reply overhead
+        return count(request.getHistory())
+                + 2 * TOKENS_PER_MESSAGE
+                + count(request.getSystemContext())
+                + count(request.getPrompt());
+    }
+}
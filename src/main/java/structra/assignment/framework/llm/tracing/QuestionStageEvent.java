@@ -0,0 +1,63 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event covering one {@link Stage} of the generation of a question. The events
+ * of a question share its trace ID, so they can be grouped in JDK Mission Control, e.g. by
+ * recording with {@code -XX:StartFlightRecording} and filtering on {@value #NAME}.
+ */
+@Name(QuestionStageEvent.NAME)
+@Label("Question Stage")
+@Category({"Structra", "Question Generation"})
+@Description("A stage of the generation of a question")
+@StackTrace(false)
+class QuestionStageEvent extends Event {
+
+    static final String NAME = "structra.QuestionStage";
+
+    @Label("Trace ID")
+    @Description("Shared by the stages of one question")
+    long traceId;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Target")
+    @Description("The question target, or the tag of the model request")
+    String target;
+
+    @Label("Payload Size")
+    @Description("The characters or bytes processed by the stage, see the stage")
+    long payloadSize;
+}
@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.tracing;
+
+import lombok.NonNull;
+
+/**
+ * A running {@link Stage} of the generation of a question, started via {@link Tracing#start}. A
+ * span may be ended on another thread than the one that started it, e.g. once a response
+ * arrived, but only once.
+ */
+public final class Span {
+
+    /** A span recording nothing, returned while tracing is disabled. */
+    static final Span NONE = new Span(0, Stage.QUESTION, "", false);
+
+    private final long traceId;
+    private final Stage stage;
+    private final String target;
+    private final QuestionStageEvent event;
+    private final long startEpochMicros;
+    private final long startNanos;
+
+    Span(long traceId, @NonNull Stage stage, @NonNull String target, boolean enabled) {
+        this.traceId = traceId;
+        this.stage = stage;
+        this.target = target;
+        this.event = enabled ? new QuestionStageEvent() : null;
+        this.startEpochMicros = enabled ? Tracing.epochMicros() : 0;
+        this.startNanos = enabled ? System.nanoTime() : 0;
+        if (event != null) {
+            event.begin();
+        }
+    }
+
+    /** Ends the span without a payload. */
+    public void end() {
+        end(0);
+    }
+
+    /**
+     * Ends the span, committing its event and writing it to the span file, if any.
+     *
+     * @param payloadSize the characters or bytes processed by the stage
+     */
+    public void end(long payloadSize) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.traceId = traceId;
+            event.stage = stage.getName();
+            event.target = target;
+            event.payloadSize = payloadSize;
+            event.commit();
+        }
+        long duration = System.nanoTime() - startNanos;
+        Tracing.write(traceId, stage, target, startEpochMicros, duration, payloadSize);
+    }
+}
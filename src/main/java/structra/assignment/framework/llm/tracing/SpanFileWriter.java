@@ -0,0 +1,129 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.tracing;
+
+import lombok.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Appends spans to a file as JSON lines, on a background thread so that tracing threads never
+ * wait for the disk. Spans arriving while the queue is full are dropped and counted.
+ *
+ * @see Tracing#writeSpansTo(Path)
+ */
+public final class SpanFileWriter implements Closeable {
+
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final int BATCH_SIZE = 1024;
+
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BufferedWriter writer;
+    private final Thread thread;
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed;
+
+    SpanFileWriter(@NonNull Path file) throws IOException {
+        this.writer =
+                Files.newBufferedWriter(
+                        file,
+                        StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+        this.thread = new Thread(this::drain, "span-file-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** @return the number of spans dropped since the queue was full */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    void write(String line) {
+        if (closed || !queue.offer(line)) {
+            dropped.increment();
+        } else if (closed && queue.remove(line)) {
+            // closed meanwhile, the drain thread may have exited before the line was queued
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Stops accepting spans, writes the queued ones and closes the file. Spans are no longer
+     * written unless {@link Tracing#writeSpansTo(Path)} is called again.
+     */
+    @Override
+    public void close() throws IOException {
+        Tracing.detach(this);
+        closed = true;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+    }
+
+    private void drain() {
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                String line = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (line == null) {
+                    continue;
+                }
+                batch.add(line);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (String span : batch) {
+                    writer.write(span);
+                    writer.newLine();
+                }
+                batch.clear();
+                if (queue.isEmpty()) {
+                    writer.flush();
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            closed = true; // the file is unusable, further spans are dropped
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.tracing;
+
+import lombok.Getter;
+
+/**
+ * The stages of the generation of a question, in the order they are passed.
+ */
+@Getter
+public enum Stage {
+
+    /** Picking the target of the question. */
+    TARGET_SELECTION("target_selection"),
+
+    /** Building the system context of the request; the payload is its length in characters. */
+    CONTEXT_BUILDING("context_building"),
+
+    /**
+     * Waiting for the rate limiter and a thread of the model, from the dispatch of the request
+     * until it is sent.
+     */
+    QUEUEING("queueing"),
+
+    /**
+     * Sending the request and reading the response; the payload is the size of the request body
+     * in bytes.
+     */
+    NETWORK("network"),
+
+    /**
+     * The whole call of the model as seen by the caller, queueing and network included; the
+     * payload is the length of the response in characters.
+     */
+    MODEL("model"),
+
+    /** Extracting the JSON from the response; the payload is its length in characters. */
+    POST_PROCESSING("post_processing"),
+
+    /** Parsing the question, construction included; the payload is its length in characters. */
+    PARSING("parsing"),
+
+    /** Creating the question from the parsed data, e.g. by the {@code QuizzMaker} factories. */
+    CONSTRUCTION("construction"),
+
+    /** The whole generation of a question, from the request until it is parsed. */
+    QUESTION("question");
+
+    /** The name of the stage in events and span files. */
+    private final String name;
+
+    Stage(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.tracing;
+
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import jdk.jfr.EventType;
+
+/**
+ * Traces the {@link Stage stages} of the generation of questions as Flight Recorder events and,
+ * optionally, as spans appended to a local JSON lines file. The stages of one question share a
+ * trace ID, which travels with its {@code ModelRequest}, so stages running on the threads of the
+ * model are correlated as well.
+ *
+ * <p>While no recording enables the {@value QuestionStageEvent#NAME} event and no span file is
+ * set, {@link #start} returns a shared span that records nothing, so tracing costs two flag reads
+ * per stage.
+ */
+public final class Tracing {
+
+    /** The trace ID of requests not belonging to any trace. */
+    public static final long NO_TRACE = 0;
+
+    private static final EventType EVENT_TYPE = EventType.getEventType(QuestionStageEvent.class);
+    private static final ThreadLocal<long[]> CURRENT = ThreadLocal.withInitial(() -> new long[1]);
+
+    private static volatile SpanFileWriter spanWriter;
+
+    private Tracing() {}
+
+    /**
+     * @return a new random trace ID, never {@link #NO_TRACE}
+     */
+    public static long newTraceId() {
+        long traceId;
+        do {
+            traceId = ThreadLocalRandom.current().nextLong();
+        } while (traceId == NO_TRACE);
+        return traceId;
+    }
+
+    /**
+     * Starts a span of the given stage.
+     *
+     * @param traceId the trace the stage belongs to
+     * @param stage the stage
+     * @param target the question target or tag of the request
+     * @return the running span, to be ended once the stage completes
+     */
+    @NonNull
+    public static Span start(long traceId, @NonNull Stage stage, @NonNull String target) {
+        boolean enabled = EVENT_TYPE.isEnabled() || spanWriter != null;
+        return enabled ? new Span(traceId, stage, target, true) : Span.NONE;
+    }
+
+    /**
+     * Starts a span of the given stage in the {@link #currentTraceId() current trace} of this
+     * thread, e.g. for stages nested in code unaware of the trace.
+     *
+     * @param stage the stage
+     * @param target the question target or tag of the request
+     * @return the running span, to be ended once the stage completes
+     */
+    @NonNull
+    public static Span start(@NonNull Stage stage, @NonNull String target) {
+        return start(currentTraceId(), stage, target);
+    }
+
+    /**
+     * @return the trace ID set by {@link #inTrace} on this thread, {@link #NO_TRACE} if there is
+     *     none
+     */
+    public static long currentTraceId() {
+        return CURRENT.get()[0];
+    }
+
+    /**
+     * Runs the action with the given trace as the current trace of this thread.
+     *
+     * @param traceId the trace ID
+     * @param action the action to run
+     * @return the result of the action
+     */
+    public static <T> T inTrace(long traceId, @NonNull Supplier<T> action) {
+        long[] current = CURRENT.get();
+        long previous = current[0];
+        current[0] = traceId;
+        try {
+            return action.get();
+        } finally {
+            current[0] = previous;
+        }
+    }
+
+    /**
+     * Appends the spans of all following stages to the given file, one JSON object per line, in
+     * addition to the Flight Recorder events. A file set before is closed.
+     *
+     * @param file the file to append to, created if it does not exist
+     * @return the writer, to be closed to stop writing spans
+     * @throws IOException If the file cannot be opened.
+     */
+    @NonNull
+    public static SpanFileWriter writeSpansTo(@NonNull Path file) throws IOException {
+        SpanFileWriter writer =
+                new SpanFileWriter(Objects.requireNonNull(file, "file cannot be null"));
+        SpanFileWriter previous;
+        synchronized (Tracing.class) {
+            previous = spanWriter;
+            spanWriter = writer;
+        }
+        if (previous != null) {
+            previous.close();
+        }
+        return writer;
+    }
+
+    /**
+     * Stops writing spans to the given writer if it is still the current one, so a closed writer
+     * no longer keeps the spans enabled.
+     *
+     * @param writer the writer being closed
+     */
+    static void detach(SpanFileWriter writer) {
+        synchronized (Tracing.class) {
+            if (spanWriter == writer) {
+                spanWriter = null;
+            }
+        }
+    }
+
+    static void write(
+            long traceId,
+            Stage stage,
+            String target,
+            long startEpochMicros,
+            long durationNanos,
+            long payloadSize) {
+        SpanFileWriter writer = spanWriter;
+        if (writer == null) {
+            return;
+        }
+
+        StringWriter line = new StringWriter();
+        try (JsonWriter json = new JsonWriter(line)) {
+            json.beginObject();
+            json.name("traceId").value(String.format("%016x", traceId));
+            json.name("stage").value(stage.getName());
+            json.name("target").value(target);
+            json.name("thread").value(Thread.currentThread().getName());
+            json.name("startMicros").value(startEpochMicros);
+            json.name("durationMicros").value(durationNanos / 1000);
+            json.name("payloadSize").value(payloadSize);
+            json.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a string writer does not throw
+        }
+        writer.write(line.toString());
+    }
+
+    static long epochMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
+    }
+}
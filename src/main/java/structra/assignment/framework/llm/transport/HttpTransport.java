@@ -0,0 +1,249 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.transport;
+
+import lombok.NonNull;
+import structra.assignment.framework.llm.model.ChatGPTModel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A reusable HTTP transport for chat completion endpoints. Every instance wraps a single {@link
+ * HttpClient}, which keeps its connections alive, multiplexes concurrent requests over one HTTP/2
+ * connection when the server supports it and reuses TLS sessions. Instances are thread-safe and
+ * meant to be shared by all models talking to the same endpoint.
+ *
+ * <p>The size of the connection pool and the keep-alive duration of idle connections are JVM wide
+ * settings of the JDK client, see {@link #configurePool(int, Duration)}.
+ *
+ * <p>Besides the connect timeout of the client, every transport has a read timeout: the maximum
+ * time until the response headers arrive, and the maximum time between two reads of the body,
+ * see {@link ReadTimeoutInputStream}.
+ *
+ * @see ChatGPTModel
+ */
+public class HttpTransport {
+
+    /** The OpenAI chat completions endpoint. */
+    public static final URI DEFAULT_ENDPOINT =
+            URI.create("https://api.openai.com/v1/chat/completions");
+
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(60);
+
+    private final URI endpoint;
+    private final HttpClient client;
+    private final Duration readTimeout;
+
+    /**
+     * Creates a new transport for the given endpoint, backed by a new HTTP/2 client using the
+     * {@link #DEFAULT_CONNECT_TIMEOUT}.
+     *
+     * @param endpoint the chat completions endpoint, e.g. a local OpenAI compatible server
+     */
+    public HttpTransport(@NonNull URI endpoint) {
+        this(endpoint, newClient(DEFAULT_CONNECT_TIMEOUT, HttpClient.Version.HTTP_2));
+    }
+
+    /**
+     * Creates a new transport for the given endpoint, backed by the given client and using the
+     * {@link #DEFAULT_READ_TIMEOUT}.
+     *
+     * @param endpoint the chat completions endpoint
+     * @param client the client used for every request
+     */
+    public HttpTransport(@NonNull URI endpoint, @NonNull HttpClient client) {
+        this(endpoint, client, DEFAULT_READ_TIMEOUT);
+    }
+
+    /**
+     * Creates a new transport for the given endpoint, backed by the given client.
+     *
+     * @param endpoint the chat completions endpoint
+     * @param client the client used for every request
+     * @param readTimeout the maximum time until the response headers arrive and between two
+     *     reads of the body
+     */
+    public HttpTransport(
+            @NonNull URI endpoint, @NonNull HttpClient client, @NonNull Duration readTimeout) {
+        this.endpoint = Objects.requireNonNull(endpoint, "endpoint cannot be null");
+        this.client = Objects.requireNonNull(client, "client cannot be null");
+        Objects.requireNonNull(readTimeout, "readTimeout cannot be null");
+        if (readTimeout.isNegative() || readTimeout.isZero()) {
+            throw new IllegalArgumentException("readTimeout must be positive");
+        }
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Returns the transport shared by all models using the {@link #DEFAULT_ENDPOINT}.
+     *
+     * @return the shared default transport
+     */
+    @NonNull
+    public static HttpTransport shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Creates a new client with the given connect timeout, preferring the given protocol version.
+     * The client falls back to HTTP/1.1 if the server does not support HTTP/2.
+     *
+     * @param connectTimeout the maximum time to establish a connection
+     * @param version the preferred protocol version
+     * @return the new client
+     */
+    @NonNull
+    public static HttpClient newClient(
+            @NonNull Duration connectTimeout, @NonNull HttpClient.Version version) {
+        return HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    /**
+     * Configures the connection pool of the JDK client. The values are read once by the JDK, so
+     * this method only has an effect if it is called before the first transport is created.
+     *
+     * @param maxConnections the maximum number of pooled HTTP/1.1 connections, {@code 0} for no
+     *     limit
+     * @param keepAlive the time idle connections are kept open
+     */
+    public static void configurePool(int maxConnections, @NonNull Duration keepAlive) {
+        if (maxConnections < 0) {
+            throw new IllegalArgumentException("maxConnections cannot be negative");
+        }
+        System.setProperty("jdk.httpclient.connectionPoolSize", String.valueOf(maxConnections));
+        System.setProperty(
+                "jdk.httpclient.keepalive.timeout", String.valueOf(keepAlive.toSeconds()));
+    }
+
+    @NonNull
+    public URI getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return the maximum time until the response headers arrive and between two reads of the
+     *     body
+     */
+    @NonNull
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Sends a JSON body to the endpoint and waits for the response headers. The caller is
+     * responsible for closing the returned body stream.
+     *
+     * <p>Interrupting the calling thread aborts the exchange.
+     *
+     * @param apiKey the bearer token
+     * @param body the JSON request body
+     * @return the response with an unread body
+     * @throws IOException If an I/O error occurs or the calling thread is interrupted.
+     */
+    @NonNull
+    public HttpResponse<InputStream> post(@NonNull String apiKey, @NonNull String body)
+            throws IOException {
+        return post(apiKey, HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a JSON body to the endpoint and waits for the response headers, like {@link
+     * #post(String, String)}.
+     *
+     * @param apiKey the bearer token
+     * @param body the publisher of the UTF-8 encoded JSON request body
+     * @return the response with an unread body
+     * @throws IOException If an I/O error occurs or the calling thread is interrupted. A {@link
+     *     java.net.http.HttpTimeoutException} signals that the headers did not arrive within the
+     *     read timeout.
+     */
+    @NonNull
+    public HttpResponse<InputStream> post(
+            @NonNull String apiKey, @NonNull HttpRequest.BodyPublisher body) throws IOException {
+        HttpRequest request =
+                HttpRequest.newBuilder(endpoint)
+                        .header("Authorization", "Bearer " + apiKey)
+                        .header("Content-Type", "application/json")
+                        .timeout(readTimeout)
+                        .POST(body)
+                        .build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request to " + endpoint + " was interrupted");
+        }
+    }
+
+    /**
+     * Opens connections to the endpoint ahead of the first real request, so that neither the TCP
+     * nor the TLS handshake is paid by a user. With HTTP/2 a single connection is multiplexed,
+     * so a single request is usually enough.
+     *
+     * @param connections the number of concurrent warm-up requests
+     * @return a future completing once all warm-up requests finished, failed requests included
+     */
+    @NonNull
+    public CompletableFuture<Void> warmUp(int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("connections must be at least 1");
+        }
+
+        HttpRequest request =
+                HttpRequest.newBuilder(endpoint)
+                        .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                        .build();
+
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[connections];
+        for (int i = 0; i < connections; i++) {
+            requests[i] =
+                    client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                            .exceptionally(throwable -> null);
+        }
+        return CompletableFuture.allOf(requests);
+    }
+
+    /** Lazily creates the shared transport on first use. */
+    private static final class SharedHolder {
+        private static final HttpTransport INSTANCE = new HttpTransport(DEFAULT_ENDPOINT);
+    }
+}
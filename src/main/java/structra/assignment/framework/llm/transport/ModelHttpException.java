@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.transport;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+/**
+ * Signals that a model endpoint answered with an HTTP error status. Besides the status code, it
+ * carries the delay requested by the server via a {@code Retry-After} header, e.g. for {@code 429
+ * Too Many Requests}.
+ */
+public class ModelHttpException extends IOException {
+
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private final int statusCode;
+    private final Duration retryAfter;
+
+    /**
+     * @param endpoint the endpoint which answered
+     * @param statusCode the HTTP status code
+     * @param retryAfter the delay requested by the server, {@code null} if none
+     */
+    public ModelHttpException(@NonNull URI endpoint, int statusCode, Duration retryAfter) {
+        super("Server returned HTTP response code: " + statusCode + " for URL: " + endpoint);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Creates an exception from the status and headers of a response.
+     *
+     * @param endpoint the endpoint which answered
+     * @param statusCode the HTTP status code
+     * @param headers the response headers
+     * @return the new exception
+     */
+    @NonNull
+    public static ModelHttpException of(
+            @NonNull URI endpoint, int statusCode, @NonNull HttpHeaders headers) {
+        Duration retryAfter =
+                headers.firstValue("Retry-After")
+                        .flatMap(ModelHttpException::parseRetryAfter)
+                        .orElse(null);
+        return new ModelHttpException(endpoint, statusCode, retryAfter);
+    }
+
+    /**
+     * Parses the value of a {@code Retry-After} header, which is either a number of seconds or an
+     * HTTP date.
+     *
+     * @param value the header value
+     * @return the delay, if the value is valid
+     */
+    @NonNull
+    public static Optional<Duration> parseRetryAfter(@NonNull String value) {
+        String trimmed = value.trim();
+        try {
+            return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed))));
+        } catch (NumberFormatException e) {
+            // not a number of seconds, try an HTTP date
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+            Duration delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+            return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the delay requested by the server via a {@code Retry-After} header
+     */
+    @NonNull
+    public Optional<Duration> getRetryAfter() {
+        return Optional.ofNullable(retryAfter);
+    }
+
+    /**
+     * @return whether the request may succeed if it is sent again later
+     */
+    public boolean isTransient() {
+        return statusCode == 408 || statusCode == TOO_MANY_REQUESTS || statusCode >= 500;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.llm.transport;
+
+import lombok.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the reads of a response body and reports a stall once no data arrived for the read
+ * timeout, e.g. a streamed response whose server stopped sending events. The JDK client only
+ * limits the time until the response headers arrive, so a stalled body would block its reader
+ * forever.
+ *
+ * <p>The stream itself does not time out: the callback is expected to abort the exchange, e.g. by
+ * failing the future of the request and interrupting the reading thread. Closing the stream stops
+ * the watch.
+ *
+ * @see HttpTransport#getReadTimeout()
+ */
+public class ReadTimeoutInputStream extends FilterInputStream {
+
+    private final long timeout;
+    private final Runnable onTimeout;
+
+    private volatile long lastProgress = System.nanoTime();
+    private volatile boolean closed;
+
+    /**
+     * @param body the body to watch
+     * @param timeout the maximum time without any data
+     * @param onTimeout called once, on a timer thread, if the body stalls
+     */
+    public ReadTimeoutInputStream(
+            @NonNull InputStream body, @NonNull Duration timeout, @NonNull Runnable onTimeout) {
+        super(body);
+        this.timeout = Objects.requireNonNull(timeout, "timeout cannot be null").toNanos();
+        this.onTimeout = Objects.requireNonNull(onTimeout, "onTimeout cannot be null");
+        schedule(this.timeout);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        lastProgress = System.nanoTime();
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        lastProgress = System.nanoTime();
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        super.close();
+    }
+
+    private void schedule(long delay) {
+        CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(this::check);
+    }
+
+    private void check() {
+        if (closed) {
+            return;
+        }
+        long idle = System.nanoTime() - lastProgress;
+        if (idle >= timeout) {
+            onTimeout.run();
+        } else {
+            schedule(timeout - idle);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.provide;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the requests of a {@link ModelQuestionProvider} and how many of the generated questions
+ * could be parsed. All counters are cumulative and cheap to update from many threads.
+ */
+public class GenerationStats {
+
+    final LongAdder requests = new LongAdder();
+    final LongAdder parsed = new LongAdder();
+    final LongAdder parseFailures = new LongAdder();
+    final LongAdder truncations = new LongAdder();
+
+    /** @return the number of requests sent to the model */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /** @return the number of generated questions that could be parsed */
+    public long getParsed() {
+        return parsed.sum();
+    }
+
+    /**
+     * @return the number of complete responses replaced by an error question, since they could not
+     *     be parsed
+     */
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    /**
+     * @return the number of responses replaced by an error question, since the model was cut off,
+     *     e.g. at the token budget of the target
+     */
+    public long getTruncations() {
+        return truncations.sum();
+    }
+
+    /**
+     * Returns the share of complete responses that could be parsed. Truncated responses are not
+     * taken into account, as they fail due to the token budget rather than the format.
+     *
+     * @return the parse success rate, {@code 0} if there was no complete response
+     */
+    public double getParseSuccessRate() {
+        long parsed = getParsed();
+        long complete = parsed + getParseFailures();
+        return complete == 0 ? 0 : (double) parsed / complete;
+    }
+
+    /** @return the share of responses that were truncated, {@code 0} if there was none */
+    public double getTruncationRate() {
+        long truncations = getTruncations();
+        long generated = getParsed() + getParseFailures() + truncations;
+        return generated == 0 ? 0 : (double) truncations / generated;
+    }
+
+    /**
+     * Returns the number of requests per usable question, which is below {@code 1} when questions
+     * are generated in batches and grows with every malformed response.
+     *
+     * @return the requests per parsed question, {@code 0} if no question was parsed yet
+     */
+    public double getCallsPerQuestion() {
+        long parsed = getParsed();
+        return parsed == 0 ? 0 : (double) getRequests() / parsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "GenerationStats{parseSuccessRate=%.3f, truncationRate=%.3f, callsPerQuestion=%.3f,"
+                        + " requests=%d, parsed=%d, parseFailures=%d, truncations=%d}",
+                getParseSuccessRate(),
+                getTruncationRate(),
+                getCallsPerQuestion(),
+                getRequests(),
+                getParsed(),
+                getParseFailures(),
+                getTruncations());
+    }
+}
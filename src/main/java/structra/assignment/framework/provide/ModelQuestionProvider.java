@@ -26,21 +26,43 @@
 package structra.assignment.framework.provide;
 
 import lombok.NonNull;
+import structra.assignment.framework.llm.Cancellation;
 import structra.assignment.framework.llm.MachineLearningModel;
+import structra.assignment.framework.llm.ModelRequest;
+import structra.assignment.framework.llm.ModelResponse;
+import structra.assignment.framework.llm.ModelSession;
 import structra.assignment.framework.llm.context.SystemContextBuilder;
 import structra.assignment.framework.llm.context.specification.GenericContext;
 import structra.assignment.framework.llm.gen.questions.QuestionGenerationTarget;
 import structra.assignment.framework.llm.gen.questions.TargetProvider;
+import structra.assignment.framework.llm.metrics.MeteredModel;
+import structra.assignment.framework.llm.metrics.ModelMetrics;
+import structra.assignment.framework.llm.metrics.TargetMetrics;
+import structra.assignment.framework.llm.tracing.Span;
+import structra.assignment.framework.llm.tracing.Stage;
+import structra.assignment.framework.llm.tracing.Tracing;
 import structra.assignment.framework.model.question.base.Question;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Provider for the LLM Game mode in which a new {@link Question} is generated by a {@link
  * MachineLearningModel} based on the contents of the provided questions.
  *
+ * <p>Every provider holds its own {@link ModelSession}, so any number of providers, e.g. one per
+ * user, can share a single model instance.
+ *
+ * <p>Cancelling the future of a question cancels the request of the model, so the connection is
+ * freed and the question is not appended to the history. Generations exceeding the {@link
+ * #setTimeout(Duration) timeout} fail and are aborted the same way.
+ *
  * @author Riko Torun
  * @author Lennart Köhler
  * @see QuestionProvider
@@ -49,9 +71,13 @@ public class ModelQuestionProvider implements QuestionProvider {
 
     public static final String TYPE = "llm";
 
-    private final MachineLearningModel model;
+    private final ModelSession session;
     private final TargetProvider targetProvider;
     private final String initialQuestionContext;
+    private final GenerationStats stats = new GenerationStats();
+
+    private volatile Duration timeout;
+    private volatile ModelMetrics metrics;
 
     /**
      * Creates a new ModelQuestionProvider with the given Questions. The QuestionGenerationTarget
@@ -85,7 +111,7 @@ public class ModelQuestionProvider implements QuestionProvider {
             @NonNull Collection<Question<?>> contextQuestions) {
         Objects.requireNonNull(contextQuestions);
 
-        this.model = model;
+        this.session = model.openSession("");
         this.targetProvider = Objects.requireNonNull(targetProvider);
         this.initialQuestionContext = getInitialQuestionContext(contextQuestions);
     }
@@ -93,27 +119,54 @@ public class ModelQuestionProvider implements QuestionProvider {
     /** {@inheritDoc} */
     @Override
     public CompletableFuture<Question<?>> next() {
-        QuestionGenerationTarget<?> target = targetProvider.provide();
-
-        String context =
-                new SystemContextBuilder()
-                        .addRawContext("You are question-answer provider for quiz app.")
-                        .addRawContext(target.getTargetContext())
-                        .addRawContext(initialQuestionContext)
-                        .build();
+        return next(null);
+    }
 
-        this.model.setContext(context);
+    /**
+     * Requests the next question like {@link #next()}, but streams the response of the model. The
+     * question text is passed to {@code onQuestionText} while it is being generated, so it can be
+     * displayed before the answer and explanation are complete.
+     *
+     * <p>The callback is invoked on the thread delivering the response. GUI code has to hand the
+     * text over to its own thread, e.g. via {@code SwingUtilities.invokeLater}.
+     *
+     * @param onQuestionText Receives the question text generated so far, every time it grows.
+     *     May be {@code null}, in which case the response is not streamed.
+     * @return A future containing the complete question.
+     */
+    public CompletableFuture<Question<?>> next(Consumer<String> onQuestionText) {
+        long traceId = Tracing.newTraceId();
+        QuestionGenerationTarget<?> target = selectTarget(traceId);
+        Span span = Tracing.start(traceId, Stage.QUESTION, target.getName());
+        ModelRequest request = createRequest(target, traceId).build();
+        stats.requests.increment();
 
         CompletableFuture<Question<?>> future = new CompletableFuture<>();
+        future.whenComplete((question, failure) -> span.end());
+
+        Span model = Tracing.start(traceId, Stage.MODEL, target.getName());
+        CompletableFuture<ModelResponse> generation;
+        if (onQuestionText == null) {
+            generation = session.execute(request);
+        } else {
+            QuestionTextExtractor extractor = new QuestionTextExtractor();
+            generation =
+                    session.stream(
+                            request, chunk -> extractor.append(chunk).ifPresent(onQuestionText));
+        }
+        endOnCompletion(model, generation);
 
-        model.execute(target.getBasePrompt())
+        Cancellation.propagate(future, generation);
+        generation
                 .thenAccept(
                         response -> {
-                            // Process the response from the model
-                            String processed = postProcessModelOutput(response);
-
-                            // Format the processed response into a Question object
-                            Question<?> question = target.parse(processed);
+                            // Format the response into a Question object
+                            Question<?> question =
+                                    toQuestion(
+                                            target,
+                                            response.getContent(),
+                                            response.isTruncated(),
+                                            traceId);
 
                             // Complete with the formatted question
                             future.complete(question);
@@ -126,6 +179,85 @@ public class ModelQuestionProvider implements QuestionProvider {
         return future;
     }
 
+    /**
+     * Requests several questions at once. All questions are generated as alternative choices of a
+     * single model request, which shares the prompt and the per request overhead among them. The
+     * questions share the same {@link QuestionGenerationTarget}, so they are of the same type.
+     *
+     * @param count the number of questions to generate
+     * @return A future containing the questions, one per choice returned by the model.
+     * @throws IllegalArgumentException if count is less than 1
+     */
+    public CompletableFuture<List<Question<?>>> nextBatch(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be at least 1");
+        }
+
+        long traceId = Tracing.newTraceId();
+        QuestionGenerationTarget<?> target = selectTarget(traceId);
+        Span span = Tracing.start(traceId, Stage.QUESTION, target.getName());
+        ModelRequest request = createRequest(target, traceId).choices(count).build();
+        stats.requests.increment();
+
+        Span model = Tracing.start(traceId, Stage.MODEL, target.getName());
+        CompletableFuture<ModelResponse> generation = session.execute(request);
+        endOnCompletion(model, generation);
+
+        CompletableFuture<List<Question<?>>> future =
+                generation.thenApply(
+                        response -> {
+                            List<Question<?>> questions = new ArrayList<>();
+                            List<String> choices = response.getChoices();
+                            for (int i = 0; i < choices.size(); i++) {
+                                questions.add(
+                                        toQuestion(
+                                                target,
+                                                choices.get(i),
+                                                response.isTruncated(i),
+                                                traceId));
+                            }
+                            return questions;
+                        });
+        future.whenComplete((questions, failure) -> span.end());
+        return Cancellation.propagate(future, generation);
+    }
+
+    /**
+     * Sets the maximum time the generation of a question may take, {@code null} to use the
+     * deadline of the model.
+     *
+     * @param timeout the timeout of the following generations
+     * @throws IllegalArgumentException if the timeout is not positive
+     */
+    public void setTimeout(Duration timeout) {
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the statistics of this provider, e.g. how many responses of the model could be
+     * parsed and how many requests a usable question costs.
+     *
+     * @return the live statistics
+     */
+    @NonNull
+    public GenerationStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Records the outcome of parsing every question into the {@link TargetMetrics} of its target,
+     * in addition to the {@link #getStats() statistics} of this provider.
+     *
+     * @param metrics the metrics of the model, e.g. of its {@link MeteredModel}; {@code null} to
+     *     stop recording
+     */
+    public void setMetrics(ModelMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean hasNext() {
@@ -135,10 +267,13 @@ public class ModelQuestionProvider implements QuestionProvider {
     /**
      * resets the QuestionProvider to its initial state.
      *
-     * @implNote The initial state is implementation dependent and might change over time
+     * @implNote The initial state is implementation dependent and might change over time. Currently
+     *     the history of the conversation with the model is cleared.
      */
     @Override
-    public void reset() {}
+    public void reset() {
+        session.getHistory().clear();
+    }
 
     /** {@inheritDoc} */
     @Override
@@ -146,6 +281,96 @@ public class ModelQuestionProvider implements QuestionProvider {
         return INFINITE_PROVISIONS;
     }
 
+    private QuestionGenerationTarget<?> selectTarget(long traceId) {
+        Span span = Tracing.start(traceId, Stage.TARGET_SELECTION, "");
+        QuestionGenerationTarget<?> target = targetProvider.provide();
+        span.end();
+        return target;
+    }
+
+    /** Ends the span of the model call once the response arrived or the call failed. */
+    private static void endOnCompletion(Span span, CompletableFuture<ModelResponse> generation) {
+        generation.whenComplete(
+                (response, failure) ->
+                        span.end(response == null ? 0 : response.getContent().length()));
+    }
+
+    /** Creates the request for the next question of the given target. */
+    private ModelRequest.Builder createRequest(QuestionGenerationTarget<?> target, long traceId) {
+        Span span = Tracing.start(traceId, Stage.CONTEXT_BUILDING, target.getName());
+        String context =
+                new SystemContextBuilder()
+                        .addRawContext("You are question-answer provider for quiz app.")
+                        .addRawContext(target.getTargetContext())
+                        .addRawContext(initialQuestionContext)
+                        .build();
+        span.end(context.length());
+
+        return ModelRequest.builder(target.getBasePrompt())
+                .systemContext(context)
+                .timeout(timeout)
+                .responseFormat(target.getResponseFormat().orElse(null))
+                .maxTokens(target.getMaxTokens().orElse(0))
+                .stopSequences(target.getStopSequences())
+                .tag(target.getName())
+                .traceId(traceId);
+    }
+
+    /**
+     * Parses a response of the model. Structured responses are parsed as they are; if the target
+     * has no schema, or the model did not adhere to it, the JSON is extracted from the text first.
+     * Responses that cannot be parsed at all are handed to {@link QuestionGenerationTarget#parse},
+     * which substitutes an error question, and counted as truncation if the model was cut off.
+     * The stages are traced in the given trace, which is the current trace of the target meanwhile.
+     */
+    private Question<?> toQuestion(
+            QuestionGenerationTarget<?> target, String content, boolean truncated, long traceId) {
+        String raw = content == null ? "" : content;
+        return Tracing.inTrace(traceId, () -> parseQuestion(target, raw, truncated, traceId));
+    }
+
+    private Question<?> parseQuestion(
+            QuestionGenerationTarget<?> target, String content, boolean truncated, long traceId) {
+        Optional<? extends Question<?>> question = Optional.empty();
+        if (target.getResponseFormat().isPresent()) {
+            Span span = Tracing.start(traceId, Stage.PARSING, target.getName());
+            question = target.tryParse(content);
+            span.end(content.length());
+        }
+
+        String processed = null;
+        if (question.isEmpty()) {
+            Span span = Tracing.start(traceId, Stage.POST_PROCESSING, target.getName());
+            processed = postProcessModelOutput(content);
+            span.end(processed.length());
+
+            span = Tracing.start(traceId, Stage.PARSING, target.getName());
+            question = target.tryParse(processed);
+            span.end(processed.length());
+        }
+
+        ModelMetrics metrics = this.metrics;
+        TargetMetrics targetMetrics = metrics == null ? null : metrics.target(target.getName());
+
+        if (question.isPresent()) {
+            stats.parsed.increment();
+            if (targetMetrics != null) {
+                targetMetrics.recordParsed();
+            }
+            return question.get();
+        }
+
+        (truncated ? stats.truncations : stats.parseFailures).increment();
+        if (targetMetrics != null) {
+            if (truncated) {
+                targetMetrics.recordTruncation();
+            } else {
+                targetMetrics.recordParseFailure();
+            }
+        }
+        return target.parse(processed);
+    }
+
     /**
      * Post-processes the model output by extracting and cleaning the content between specified
      * delimiter characters.
@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.provide;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how the questions of a {@link PrefetchingQuestionProvider} were served. All counters are
+ * cumulative and cheap to update from many threads.
+ */
+public class PrefetchStats {
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder prefetched = new LongAdder();
+    final LongAdder expired = new LongAdder();
+    final LongAdder failures = new LongAdder();
+
+    /** @return the number of questions served from the buffer without waiting */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** @return the number of questions the caller had to wait for, since the buffer was empty */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** @return the number of questions generated in the background */
+    public long getPrefetched() {
+        return prefetched.sum();
+    }
+
+    /** @return the number of prefetched questions discarded since they were too old */
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    /** @return the number of background generations that failed */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /** @return the share of questions served from the buffer, {@code 0} if none was served yet */
+    public double getHitRate() {
+        long hits = getHits();
+        long served = hits + getMisses();
+        return served == 0 ? 0 : (double) hits / served;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "PrefetchStats{hitRate=%.3f, hits=%d, misses=%d, prefetched=%d, expired=%d,"
+                        + " failures=%d}",
+                getHitRate(),
+                getHits(),
+                getMisses(),
+                getPrefetched(),
+                getExpired(),
+                getFailures());
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.provide;
+
+import lombok.NonNull;
+import structra.assignment.framework.model.question.base.Question;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decorates a {@link QuestionProvider}, e.g. a {@link ModelQuestionProvider}, with a bounded
+ * buffer of questions generated ahead of time. {@link #next()} is served from the buffer without
+ * waiting for the model, and every served question triggers the generation of a replacement in
+ * the background. Only if the buffer runs dry does the caller wait, for the next question to
+ * complete.
+ *
+ * <p>The buffer holds at most {@link Builder#depth(int) depth} questions, counting those being
+ * generated, and at most {@link Builder#concurrency(int) concurrency} of them are generated at
+ * once. Prefetched questions older than the {@link Builder#maxAge(Duration) maximum age} are
+ * discarded instead of served. The provider starts filling its buffer when it is built.
+ *
+ * <p>Questions generated concurrently do not see each other in the history of the model, so a
+ * higher concurrency trades the variety of the questions for a faster refill. A failed
+ * generation fails the oldest waiting caller, if any; otherwise the buffer is only refilled on
+ * the next call, so an unavailable model is not called in a loop.
+ *
+ * <p>Use one provider per session: the buffer, like the history of a {@link
+ * ModelQuestionProvider}, belongs to a single user.
+ *
+ * @see PrefetchStats
+ */
+public class PrefetchingQuestionProvider implements QuestionProvider {
+
+    private final QuestionProvider delegate;
+    private final int depth;
+    private final int concurrency;
+    private final long maxAge;
+    private final PrefetchStats stats = new PrefetchStats();
+
+    private final Object lock = new Object();
+    private final Deque<Prefetched> buffer = new ArrayDeque<>();
+    private final Deque<CompletableFuture<Question<?>>> waiters = new ArrayDeque<>();
+    private final Set<CompletableFuture<Question<?>>> inFlight = new HashSet<>();
+
+    /** The number of generations started by the current epoch and not completed yet. */
+    private int pending;
+
+    /** Incremented on every {@link #reset()}, so generations started before are ignored. */
+    private long epoch;
+
+    private PrefetchingQuestionProvider(Builder builder) {
+        this.delegate = builder.delegate;
+        this.depth = builder.depth;
+        this.concurrency = builder.concurrency;
+        this.maxAge = builder.maxAge == null ? Long.MAX_VALUE : builder.maxAge.toNanos();
+    }
+
+    /**
+     * Creates a builder for a provider prefetching the questions of the given provider.
+     *
+     * @param delegate the provider generating the questions
+     * @return a new builder
+     */
+    @NonNull
+    public static Builder builder(@NonNull QuestionProvider delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * Returns a prefetched question, or the next question to be generated if the buffer is empty.
+     * Cancelling the returned future does not cancel the generation, whose question is buffered
+     * instead.
+     */
+    @Override
+    public CompletableFuture<Question<?>> next() {
+        CompletableFuture<Question<?>> question;
+        synchronized (lock) {
+            evictExpired(System.nanoTime());
+            Prefetched ready = buffer.pollFirst();
+            if (ready != null) {
+                stats.hits.increment();
+                question = CompletableFuture.completedFuture(ready.question);
+            } else if (pending == 0 && !delegate.hasNext()) {
+                question = null;
+            } else {
+                stats.misses.increment();
+                question = new CompletableFuture<>();
+                waiters.addLast(question);
+            }
+        }
+
+        if (question == null) {
+            return delegate.next();
+        }
+        if (!question.isDone()) {
+            CompletableFuture<Question<?>> waiter = question;
+            waiter.whenComplete(
+                    (result, failure) -> {
+                        synchronized (lock) {
+                            waiters.remove(waiter);
+                        }
+                    });
+        }
+        refill();
+        return question;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext() {
+        synchronized (lock) {
+            if (!buffer.isEmpty() || pending > 0) {
+                return true;
+            }
+        }
+        return delegate.hasNext();
+    }
+
+    /**
+     * Discards the prefetched questions, cancels the running generations and resets the
+     * delegate. Callers waiting for a question are served by the generations started afterwards.
+     */
+    @Override
+    public void reset() {
+        List<CompletableFuture<Question<?>>> cancelled;
+        synchronized (lock) {
+            epoch++;
+            buffer.clear();
+            pending = 0;
+            cancelled = new ArrayList<>(inFlight);
+            inFlight.clear();
+        }
+        cancelled.forEach(generation -> generation.cancel(true));
+        delegate.reset();
+        refill();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getMaxProvisions() {
+        return delegate.getMaxProvisions();
+    }
+
+    /**
+     * @return the number of prefetched questions ready to be served
+     */
+    public int getBuffered() {
+        synchronized (lock) {
+            return buffer.size();
+        }
+    }
+
+    /**
+     * @return the live statistics of this provider
+     */
+    @NonNull
+    public PrefetchStats getStats() {
+        return stats;
+    }
+
+    /** Starts generations until the buffer is full or the concurrency is exhausted. */
+    private void refill() {
+        while (true) {
+            long started;
+            synchronized (lock) {
+                if (pending >= concurrency
+                        || buffer.size() + pending >= depth + waiters.size()
+                        || !delegate.hasNext()) {
+                    return;
+                }
+                pending++;
+                started = epoch;
+            }
+
+            CompletableFuture<Question<?>> generation;
+            try {
+                generation = delegate.next();
+            } catch (RuntimeException e) {
+                generation = CompletableFuture.failedFuture(e);
+            }
+
+            boolean stale;
+            synchronized (lock) {
+                stale = started != epoch;
+                if (!stale) {
+                    inFlight.add(generation);
+                }
+            }
+            if (stale) {
+                generation.cancel(true);
+                continue;
+            }
+
+            CompletableFuture<Question<?>> registered = generation;
+            generation.whenComplete(
+                    (question, failure) -> completed(registered, started, question, failure));
+        }
+    }
+
+    private void completed(
+            CompletableFuture<Question<?>> generation,
+            long started,
+            Question<?> question,
+            Throwable failure) {
+        synchronized (lock) {
+            if (started != epoch) {
+                return; // started before a reset
+            }
+            pending--;
+            inFlight.remove(generation);
+            if (failure != null) {
+                stats.failures.increment();
+            } else {
+                stats.prefetched.increment();
+            }
+        }
+
+        // waiters are completed outside the lock, since completing runs their callbacks. A waiter
+        // may have been cancelled meanwhile, in which case the next one is served instead.
+        boolean served = false;
+        while (!served) {
+            CompletableFuture<Question<?>> waiter;
+            synchronized (lock) {
+                if (started != epoch) {
+                    return; // reset meanwhile
+                }
+                waiter = waiters.pollFirst();
+                if (waiter == null) {
+                    if (failure == null) {
+                        buffer.addLast(new Prefetched(question, System.nanoTime()));
+                    }
+                    break;
+                }
+            }
+            served =
+                    failure == null
+                            ? waiter.complete(question)
+                            : waiter.completeExceptionally(failure);
+        }
+        if (failure == null || served) {
+            refill();
+        }
+    }
+
+    private void evictExpired(long now) {
+        Prefetched oldest;
+        while ((oldest = buffer.peekFirst()) != null && now - oldest.readyAt > maxAge) {
+            buffer.removeFirst();
+            stats.expired.increment();
+        }
+    }
+
+    /** A question waiting in the buffer. */
+    private static final class Prefetched {
+        private final Question<?> question;
+        private final long readyAt;
+
+        private Prefetched(Question<?> question, long readyAt) {
+            this.question = question;
+            this.readyAt = readyAt;
+        }
+    }
+
+    /** A builder for {@link PrefetchingQuestionProvider} instances. */
+    public static final class Builder {
+
+        private final QuestionProvider delegate;
+        private int depth = 3;
+        private int concurrency = 1;
+        private Duration maxAge;
+
+        private Builder(QuestionProvider delegate) {
+            this.delegate = Objects.requireNonNull(delegate, "delegate cannot be null");
+        }
+
+        /**
+         * Sets the maximum number of questions buffered or being generated, {@code 3} by default.
+         */
+        public Builder depth(int depth) {
+            if (depth < 1) {
+                throw new IllegalArgumentException("depth must be at least 1");
+            }
+            this.depth = depth;
+            return this;
+        }
+
+        /** Sets the maximum number of questions generated at once, {@code 1} by default. */
+        public Builder concurrency(int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("concurrency must be at least 1");
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time a prefetched question is served after it was generated, {@code
+         * null} to serve it regardless of its age, which is the default.
+         */
+        public Builder maxAge(Duration maxAge) {
+            if (maxAge != null && (maxAge.isNegative() || maxAge.isZero())) {
+                throw new IllegalArgumentException("maxAge must be positive");
+            }
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        /** Builds the provider and starts filling its buffer. */
+        @NonNull
+        public PrefetchingQuestionProvider build() {
+            PrefetchingQuestionProvider provider = new PrefetchingQuestionProvider(this);
+            provider.refill();
+            return provider;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Riko Torun, Artur Rausch, Lennart Köhler, Moritz Wiedemann, Tim Stöcker, Souren Ishkhanian
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package structra.assignment.framework.provide;
+
+import structra.assignment.framework.model.StringConstants;
+
+import java.util.Optional;
+
+/**
+ * Extracts the question text from an incomplete, streamed model response. The response is expected
+ * to follow the JSON format requested by the question targets, in which the {@value
+ * StringConstants.Questions#QUESTIONS_NAME} object and its {@value
+ * StringConstants.Questions#QUESTION_TEXT} are generated first. This allows displaying the question
+ * text long before the answer and the explanation are generated.
+ *
+ * <p>Instances are not thread-safe; chunks of a single response are expected to arrive in order.
+ *
+ * @see ModelQuestionProvider#next(java.util.function.Consumer)
+ */
+final class QuestionTextExtractor {
+
+    private static final String QUESTIONS_KEY =
+            '"' + StringConstants.Questions.QUESTIONS_NAME + '"';
+    private static final String TEXT_KEY = '"' + StringConstants.Questions.QUESTION_TEXT + '"';
+
+    private final StringBuilder response = new StringBuilder();
+    private final StringBuilder text = new StringBuilder();
+
+    /** Index of the first character of the text value, -1 if it has not been generated yet. */
+    private int valueStart = -1;
+
+    /** Index of the first character of the text value not decoded yet. */
+    private int position;
+
+    /** Whether the closing quote of the text value was reached. */
+    private boolean closed;
+
+    /**
+     * Appends the next chunk of the response. Once the text value is complete, further chunks are
+     * ignored.
+     *
+     * @param chunk the next part of the response
+     * @return the question text generated so far, if it changed with this chunk
+     */
+    Optional<String> append(String chunk) {
+        if (closed) {
+            return Optional.empty();
+        }
+        response.append(chunk);
+
+        if (valueStart < 0) {
+            valueStart = findValueStart();
+            if (valueStart < 0) {
+                return Optional.empty();
+            }
+            position = valueStart;
+        }
+
+        int decoded = text.length();
+        decodeValue();
+        if (closed) {
+            response.setLength(0); // the rest of the response is not needed
+        }
+        return text.length() == decoded ? Optional.empty() : Optional.of(text.toString());
+    }
+
+    private int findValueStart() {
+        int questions = response.indexOf(QUESTIONS_KEY);
+        if (questions < 0) {
+            return -1;
+        }
+
+        int key = response.indexOf(TEXT_KEY, questions + QUESTIONS_KEY.length());
+        if (key < 0) {
+            return -1;
+        }
+
+        for (int i = key + TEXT_KEY.length(); i < response.length(); i++) {
+            char c = response.charAt(i);
+            if (c == '"') {
+                return i + 1;
+            }
+            if (c != ':' && !Character.isWhitespace(c)) {
+                return -1; // not a string value
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the JSON string from {@link #position} up to its closing quote or, if it is not
+     * complete yet, up to the last complete character, where the next chunk continues.
+     */
+    private void decodeValue() {
+        for (; position < response.length(); position++) {
+            char c = response.charAt(position);
+
+            if (c == '"') {
+                closed = true;
+                return;
+            }
+            if (c != '\\') {
+                text.append(c);
+                continue;
+            }
+            if (position + 1 >= response.length()) {
+                return; // incomplete escape sequence
+            }
+
+            char escaped = response.charAt(position + 1);
+            switch (escaped) {
+                case 'n' -> text.append('\n');
+                case 't' -> text.append('\t');
+                case 'r' -> text.append('\r');
+                case 'b' -> text.append('\b');
+                case 'f' -> text.append('\f');
+                case 'u' -> {
+                    if (position + 5 >= response.length()) {
+                        return; // incomplete unicode escape
+                    }
+                    try {
+                        String hex = response.substring(position + 2, position + 6);
+                        text.append((char) Integer.parseInt(hex, 16));
+                        position += 4;
+                    } catch (NumberFormatException e) {
+                        text.append(escaped); // malformed escape, keep it as is
+                    }
+                }
+                default -> text.append(escaped);
+            }
+            position++;
+        }
+    }
+}